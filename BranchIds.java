@@ -0,0 +1,73 @@
+package simpledb.versioned.benchmark;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dense int ids for branch names, 0 for the first branch added, 1 for the
+ * next and so on, so per-branch state can live in arrays indexed by branch
+ * id. Names are only needed for the db calls and for reporting.
+ */
+public class BranchIds implements Serializable {
+
+	/**
+	 * Id of no branch, e.g. one that does not exist yet.
+	 */
+	public static final int NO_BRANCH = -1;
+
+	private final List<String> names;
+	private final Map<String, Integer> ids;
+
+	public BranchIds() {
+		names = new ArrayList<String>();
+		ids = new HashMap<String, Integer>();
+	}
+
+	/**
+	 * Give a new branch the next id.
+	 */
+	public int add(String name) {
+		if (ids.containsKey(name)) {
+			throw new IllegalArgumentException("Branch already exists: " + name);
+		}
+		int id = names.size();
+		names.add(name);
+		ids.put(name, id);
+		return id;
+	}
+
+	public int getId(String name) {
+		Integer id = ids.get(name);
+		if (id == null) {
+			throw new IllegalArgumentException("Branch does not exist: " + name);
+		}
+		return id;
+	}
+
+	public String getName(int id) {
+		return names.get(id);
+	}
+
+	public String[] getNames(int[] ids) {
+		String[] out = new String[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			out[i] = names.get(ids[i]);
+		}
+		return out;
+	}
+
+	/**
+	 * The names of all branches, by id.
+	 */
+	public List<String> getNames() {
+		return Collections.unmodifiableList(names);
+	}
+
+	public int size() {
+		return names.size();
+	}
+}
@@ -0,0 +1,116 @@
+package simpledb.versioned.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+
+import simpledb.Constants;
+import simpledb.versioned.benchmark.branchstrategy.BranchStrategy;
+import simpledb.versioned.benchmark.tupleloadstrategy.TupleLoadStrategy;
+
+/**
+ * A directory holding the result of a build phase, keyed by the properties
+ * that determine it, so that later runs over the same dataset can restore the
+ * table instead of building it again.
+ *
+ * The table files and commit metadata are written by the VersionDB, the
+ * strategies by serialization. A snapshot only counts once it is marked
+ * complete, so an interrupted save is rebuilt and overwritten by the next run.
+ */
+public class BuildSnapshot {
+	static final String COMPLETE_FILE_NAME = "COMPLETE";
+	static final String BRANCH_STRATEGY_FILE_NAME = "branch_strategy.ser";
+	static final String TUPLE_LOAD_STRATEGY_FILE_NAME = "tuple_load_strategy.ser";
+
+	private final File dir;
+
+	public BuildSnapshot(File baseDir, String key) {
+		dir = new File(baseDir, key);
+	}
+
+	/**
+	 * Derive a snapshot key from the RNG seed and the given properties, in
+	 * order, including ones that are unset.
+	 */
+	public static String makeKey(Properties props, List<String> keyProperties) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(Constants.RNG_SEED).append('=').append(System.getProperty(Constants.RNG_SEED)).append('\n');
+		for (String keyProperty : keyProperties) {
+			sb.append(keyProperty).append('=').append(props.getProperty(keyProperty)).append('\n');
+		}
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			byte[] hash = digest.digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+			StringBuilder key = new StringBuilder();
+			for (byte b : hash) {
+				key.append(String.format("%02x", b));
+			}
+			return key.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public File getDir() {
+		return dir;
+	}
+
+	public boolean exists() {
+		return new File(dir, COMPLETE_FILE_NAME).exists();
+	}
+
+	/**
+	 * Clear out anything left by an earlier, incomplete save.
+	 */
+	public void reset() throws IOException {
+		if (dir.exists()) {
+			FileUtils.deleteDirectory(dir);
+		}
+		FileUtils.forceMkdir(dir);
+	}
+
+	public void markComplete() throws IOException {
+		FileUtils.touch(new File(dir, COMPLETE_FILE_NAME));
+	}
+
+	public void writeBranchStrategy(BranchStrategy branchStrategy) throws IOException {
+		writeObject(BRANCH_STRATEGY_FILE_NAME, branchStrategy);
+	}
+
+	public BranchStrategy readBranchStrategy() throws IOException {
+		return (BranchStrategy) readObject(BRANCH_STRATEGY_FILE_NAME);
+	}
+
+	public void writeTupleLoadStrategy(TupleLoadStrategy tupleLoadStrategy) throws IOException {
+		writeObject(TUPLE_LOAD_STRATEGY_FILE_NAME, tupleLoadStrategy);
+	}
+
+	public TupleLoadStrategy readTupleLoadStrategy() throws IOException {
+		return (TupleLoadStrategy) readObject(TUPLE_LOAD_STRATEGY_FILE_NAME);
+	}
+
+	private void writeObject(String fileName, Serializable obj) throws IOException {
+		try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(new File(dir, fileName)))) {
+			out.writeObject(obj);
+		}
+	}
+
+	private Object readObject(String fileName) throws IOException {
+		try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(new File(dir, fileName)))) {
+			return in.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e);
+		}
+	}
+}
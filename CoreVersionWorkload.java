@@ -1,8 +1,11 @@
 package simpledb.versioned.benchmark;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Copyright (c) 2010 Yahoo! Inc. All rights reserved. 
@@ -34,24 +37,37 @@ import simpledb.TransactionId;
 import simpledb.TupleDesc;
 import simpledb.Type;
 import simpledb.versioned.VersionedTuple;
+import simpledb.versioned.benchmark.OperationSchedule.Interleaving;
+import simpledb.versioned.benchmark.OperationSchedule.Operation;
 import simpledb.versioned.benchmark.branchstrategy.BranchStrategy;
 import simpledb.versioned.benchmark.branchstrategy.BranchStrategy.BranchOpData;
 import simpledb.versioned.benchmark.branchstrategy.BranchStrategy.CompareOpData;
 import simpledb.versioned.benchmark.branchstrategy.BranchStrategy.DeleteOpData;
 import simpledb.versioned.benchmark.branchstrategy.BranchStrategy.InsertOpData;
 import simpledb.versioned.benchmark.branchstrategy.BranchStrategy.MergeOpData;
+import simpledb.versioned.benchmark.branchstrategy.BranchStrategy.OpData;
 import simpledb.versioned.benchmark.branchstrategy.BranchStrategy.ReadOpData;
 import simpledb.versioned.benchmark.branchstrategy.BranchStrategy.ScanOpData;
+import simpledb.versioned.benchmark.branchstrategy.BranchStrategy.UniformBranchSelector;
 import simpledb.versioned.benchmark.branchstrategy.BranchStrategy.UpdateOpData;
 import simpledb.versioned.benchmark.tupleloadstrategy.TupleLoadStrategy;
-import simpledb.versioned.benchmark.ycsb.Client;
 import simpledb.versioned.benchmark.ycsb.Scenario;
 import simpledb.versioned.benchmark.ycsb.Scenario.VersionedTableEntry;
 import simpledb.versioned.benchmark.ycsb.VersionDB;
+import simpledb.versioned.benchmark.ycsb.VersionDB.BranchHandle;
+import simpledb.versioned.benchmark.ycsb.VersionDB.CheckoutRead;
 import simpledb.versioned.benchmark.ycsb.VersionDB.Transaction;
 import simpledb.versioned.benchmark.ycsb.VersionDB.TransactionExecutor;
 import simpledb.versioned.benchmark.ycsb.Workload;
 import simpledb.versioned.benchmark.ycsb.WorkloadException;
+import simpledb.versioned.benchmark.ycsb.generator.ConstantIntegerGenerator;
+import simpledb.versioned.benchmark.ycsb.generator.CounterGenerator;
+import simpledb.versioned.benchmark.ycsb.generator.ExponentialGenerator;
+import simpledb.versioned.benchmark.ycsb.generator.IntegerGenerator;
+import simpledb.versioned.benchmark.ycsb.generator.SkewedLatestGenerator;
+import simpledb.versioned.benchmark.ycsb.generator.UniformIntegerGenerator;
+import simpledb.versioned.benchmark.ycsb.generator.ZipfianGenerator;
+import simpledb.versioned.benchmark.ycsb.measurements.MetricKey;
 
 public class CoreVersionWorkload extends Workload {
 	static final Logger logger = Logger.getLogger(CoreVersionWorkload.class);
@@ -89,17 +105,84 @@ public class CoreVersionWorkload extends Workload {
 	public static final String REPORT_CONTAINING_VERSIONS_PROPERTY = "report_containing_versions";
 	public static final String REPORT_CONTAINING_VERSIONS_PROPERTY_DEFAULT = "false";
 
+	/**
+	 * Scans of several branches in a single pass. The fan-out is "all" (the
+	 * heads of all branches), "active" (the branches of interest of the branch
+	 * strategy) or a number k of branches picked uniformly at random.
+	 */
+	public static final String NUM_MULTI_SCANS_PROPERTY = "multiscan";
+	public static final String NUM_MULTI_SCANS_PROPERTY_DEFAULT = "0";
+
+	public static final String MULTI_SCAN_FANOUT_PROPERTY = "multiscan_fanout";
+	public static final String MULTI_SCAN_FANOUT_ALL = "all";
+	public static final String MULTI_SCAN_FANOUT_ACTIVE = "active";
+	public static final String MULTI_SCAN_FANOUT_PROPERTY_DEFAULT = MULTI_SCAN_FANOUT_ALL;
+
 	public static final String NUM_QUERY_3_PROPERTY = "query3";
 	public static final String NUM_QUERY_3_PROPERTY_DEFAULT = "0";
 
 	public static final String NUM_QUERY_4_PROPERTY = "query4";
 	public static final String NUM_QUERY_4_PROPERTY_DEFAULT = "0";
 
+	/**
+	 * QUERY_3 joins the keys below a bound. The bound is query3_key_fraction
+	 * of the keys inserted so far if set, query3_key_range otherwise.
+	 */
+	public static final String QUERY_3_KEY_RANGE_PROPERTY = "query3_key_range";
+	public static final String QUERY_3_KEY_RANGE_PROPERTY_DEFAULT = "1000";
+	public static final String QUERY_3_KEY_FRACTION_PROPERTY = "query3_key_fraction";
+
+	/**
+	 * QUERY_4 selects the tuples whose query4_field is at least alpha. Alpha
+	 * is drawn from query4_alpha_distribution: "constant" (query4_alpha),
+	 * "uniform" or "zipfian" (favoring small alphas) over [query4_alpha,
+	 * query4_alpha_max]. query4_alpha_max defaults to the largest key at the
+	 * start of the run, which sweeps the whole range of the primary key.
+	 */
+	public static final String QUERY_4_FIELD_PROPERTY = "query4_field";
+	public static final String QUERY_4_FIELD_PROPERTY_DEFAULT = "0";
+	public static final String QUERY_4_ALPHA_DISTRIBUTION_PROPERTY = "query4_alpha_distribution";
+	public static final String QUERY_4_ALPHA_DISTRIBUTION_PROPERTY_DEFAULT = "constant";
+	public static final String QUERY_4_ALPHA_PROPERTY = "query4_alpha";
+	public static final String QUERY_4_ALPHA_PROPERTY_DEFAULT = "0";
+	public static final String QUERY_4_ALPHA_MAX_PROPERTY = "query4_alpha_max";
+
+	/**
+	 * Checkouts pick a commit by its age, 0 being the latest, from
+	 * checkout_age_distribution: "uniform" (the default), "latest",
+	 * "skewed_latest" (zipfian favoring recent commits) or "exponential" (with
+	 * mean checkout_age_mean). checkout_read is what they then read from the
+	 * checked-out version: "none", "scan" or "read" of a random key.
+	 */
+	public static final String CHECKOUT_AGE_DISTRIBUTION_PROPERTY = "checkout_age_distribution";
+	public static final String CHECKOUT_AGE_UNIFORM = "uniform";
+	public static final String CHECKOUT_AGE_LATEST = "latest";
+	public static final String CHECKOUT_AGE_SKEWED_LATEST = "skewed_latest";
+	public static final String CHECKOUT_AGE_EXPONENTIAL = "exponential";
+	public static final String CHECKOUT_AGE_DISTRIBUTION_PROPERTY_DEFAULT = CHECKOUT_AGE_UNIFORM;
+	public static final String CHECKOUT_AGE_MEAN_PROPERTY = "checkout_age_mean";
+	public static final String CHECKOUT_AGE_MEAN_PROPERTY_DEFAULT = "10";
+	public static final String CHECKOUT_READ_PROPERTY = "checkout_read";
+	public static final String CHECKOUT_READ_PROPERTY_DEFAULT = "none";
+
+	/**
+	 * Prefix of the metrics under which queries report the number of tuples
+	 * they returned per million keys.
+	 */
+	public static final String SELECTIVITY_METRIC_PREFIX = "SELECTIVITY (PPM): ";
+
 	public static final String NUM_DIFF_PROPERTY = "diff";
 	public static final String NUM_DIFF_PROPERTY_DEFAULT = "0";
 
 	public static final String NUM_COMMITS_PROPERTY = "commit";
 
+	/**
+	 * Sub-operation name of inserts, updates, deletes and reads on a branch
+	 * picked from the partition of the client thread rather than by the branch
+	 * strategy.
+	 */
+	static final String PARTITIONED_SUB_OPERATION_NAME = "PARTITIONED";
+
 	/**
 	 * The name of the property for the scan length distribution. Options are
 	 * "uniform" and "zipfian" (favoring short scans)
@@ -112,9 +195,38 @@ public class CoreVersionWorkload extends Workload {
 	public static final String SCAN_LENGTH_DISTRIBUTION_PROPERTY_DEFAULT = "uniform";
 
 	/**
-	 * Reporting containing versions for scans. Default is false; set below.
+	 * Reporting containing versions for scans. Default is false; set in init.
 	 */
-	public final boolean rcv = false;
+	boolean rcv = false;
+
+	/**
+	 * Fan-out of multi-branch scans, one of the MULTI_SCAN_FANOUT values or a
+	 * number of branches.
+	 */
+	String multiScanFanout;
+	int multiScanNumBranches;
+	// by number of branches scanned, only ever replaced so reads need no lock
+	volatile String[] multiScanSubOperationNames = new String[0];
+
+	/**
+	 * Query parameters, a query3KeyFraction below zero means a fixed range.
+	 */
+	int query3KeyRange;
+	double query3KeyFraction;
+	int query4Field;
+	String query4SubOperationName;
+	IntegerGenerator query4AlphaChooser;
+
+	/**
+	 * Selectivity metric keys of QUERY_3 and QUERY_4, by sub-operation name.
+	 */
+	final ConcurrentHashMap<String, MetricKey> query3SelectivityKeys = new ConcurrentHashMap<String, MetricKey>();
+	final ConcurrentHashMap<String, MetricKey> query4SelectivityKeys = new ConcurrentHashMap<String, MetricKey>();
+
+	String checkoutAgeDistribution;
+	double checkoutAgeMean;
+	CheckoutRead checkoutRead;
+	String checkoutSubOperationName;
 
 	/**
 	 * Scenario data.
@@ -127,28 +239,82 @@ public class CoreVersionWorkload extends Workload {
 
 	Type primaryKeyType;
 
-	// should be thread local
-	VersionedTuple tup;
-
 	/**
 	 * Workload generators and selectors.
 	 */
 
-	List<String> operations;
-	Iterator<String> operationsIt;
+	/**
+	 * Number of operations of each type, indexed by Operation ordinal.
+	 */
+	long[] operationCounts;
+
+	Interleaving interleaving;
 
 	BranchStrategy branchStrategy;
 
 	TupleLoadStrategy tupleLoadStrategy;
 
-	Random opChooser;
+	/**
+	 * Branches and merges change the version graph and the key sets shared by
+	 * all threads, so they hold the write lock. Every other operation only
+	 * touches the branches owned by its thread, or reads, and holds the read
+	 * lock.
+	 */
+	final ReentrantReadWriteLock treeLock = new ReentrantReadWriteLock();
+
+	/**
+	 * State of one client thread. Each thread runs its own schedule over its
+	 * share of the operation counts. With more than one thread, inserts,
+	 * updates, deletes and reads go to branches owned by the thread alone, so
+	 * threads write to disjoint branches.
+	 */
+	static class ThreadState {
+		final int threadCount;
+		final VersionedTuple tup;
+		// ids of the branches owned
+		final IntList ownedBranches;
+		final Random rand;
+		final OperationSchedule schedule;
+
+		/**
+		 * Skewed choice of checkout commits, made on the first such checkout.
+		 * The basis follows the number of commits.
+		 */
+		CounterGenerator commitCounter;
+		SkewedLatestGenerator commitChooser;
+		/**
+		 * Exponential choice of checkout ages, made on the first such checkout.
+		 */
+		ExponentialGenerator checkoutAgeChooser;
+
+		ThreadState(TupleDesc td, int threadId, int threadCount, IntList ownedBranches,
+				Interleaving interleaving, long[] operationCounts) {
+			this.threadCount = threadCount;
+			this.ownedBranches = ownedBranches;
+			tup = new VersionedTuple(td);
+			try {
+				rand = new Random(
+						Long.parseLong(System.getProperty(Constants.RNG_SEED)) * Constants.CORE_V_WORKLOAD_SEED_MUL
+								+ threadId);
+			} catch (Exception ex) {
+				throw new RuntimeException();
+			}
 
-	public CoreVersionWorkload() {
-		try {
-			opChooser = new Random(
-					Long.parseLong(System.getProperty(Constants.RNG_SEED)) * Constants.CORE_V_WORKLOAD_SEED_MUL);
-		} catch (Exception ex) {
-			throw new RuntimeException();
+			// thread i gets count / n operations of each type, plus one of the
+			// remainder if i < count % n
+			long[] counts = new long[operationCounts.length];
+			for (int i = 0; i < counts.length; i++) {
+				counts[i] = operationCounts[i] / threadCount + (threadId < operationCounts[i] % threadCount ? 1 : 0);
+			}
+			schedule = new OperationSchedule(interleaving, counts, rand);
+		}
+
+		boolean isPartitioned() {
+			return threadCount > 1;
+		}
+
+		int nextOwnedBranch() {
+			return ownedBranches.get(rand.nextInt(ownedBranches.size()));
 		}
 	}
 
@@ -160,7 +326,6 @@ public class CoreVersionWorkload extends Workload {
 	public void init(Properties p, Scenario scenario) throws WorkloadException {
 		table = scenario.getVersionTableEntry();
 		td = scenario.getTupleDesc();
-		tup = new VersionedTuple(td);
 		rootBranchName = scenario.getRootBranchName();
 
 		// setup branch space for transactions
@@ -170,9 +335,42 @@ public class CoreVersionWorkload extends Workload {
 		tupleLoadStrategy = scenario.getTupleLoadStrategy();
 
 		// setup transactions
-		operations = new ArrayList<String>();
 		setupTransactionDistribution(p);
-		operationsIt = operations.iterator();
+
+		rcv = Boolean.parseBoolean(
+				p.getProperty(REPORT_CONTAINING_VERSIONS_PROPERTY, REPORT_CONTAINING_VERSIONS_PROPERTY_DEFAULT));
+		multiScanFanout = p.getProperty(MULTI_SCAN_FANOUT_PROPERTY, MULTI_SCAN_FANOUT_PROPERTY_DEFAULT);
+		if (!multiScanFanout.equals(MULTI_SCAN_FANOUT_ALL) && !multiScanFanout.equals(MULTI_SCAN_FANOUT_ACTIVE)) {
+			try {
+				multiScanNumBranches = Integer.parseInt(multiScanFanout);
+			} catch (NumberFormatException e) {
+				throw new WorkloadException("Invalid " + MULTI_SCAN_FANOUT_PROPERTY + ": " + multiScanFanout);
+			}
+			if (multiScanNumBranches <= 0) {
+				throw new WorkloadException("Invalid " + MULTI_SCAN_FANOUT_PROPERTY + ": " + multiScanFanout);
+			}
+		}
+
+		setupQueryParameters(p);
+
+		checkoutAgeDistribution = p.getProperty(CHECKOUT_AGE_DISTRIBUTION_PROPERTY,
+				CHECKOUT_AGE_DISTRIBUTION_PROPERTY_DEFAULT);
+		if (checkoutAgeDistribution.compareTo(CHECKOUT_AGE_EXPONENTIAL) == 0) {
+			checkoutAgeMean = Double
+					.parseDouble(p.getProperty(CHECKOUT_AGE_MEAN_PROPERTY, CHECKOUT_AGE_MEAN_PROPERTY_DEFAULT));
+		} else if (checkoutAgeDistribution.compareTo(CHECKOUT_AGE_UNIFORM) != 0
+				&& checkoutAgeDistribution.compareTo(CHECKOUT_AGE_LATEST) != 0
+				&& checkoutAgeDistribution.compareTo(CHECKOUT_AGE_SKEWED_LATEST) != 0) {
+			throw new WorkloadException(
+					"Unknown " + CHECKOUT_AGE_DISTRIBUTION_PROPERTY + ": " + checkoutAgeDistribution);
+		}
+		try {
+			checkoutRead = CheckoutRead
+					.fromName(p.getProperty(CHECKOUT_READ_PROPERTY, CHECKOUT_READ_PROPERTY_DEFAULT));
+		} catch (IllegalArgumentException e) {
+			throw new WorkloadException(e);
+		}
+		checkoutSubOperationName = "CHECKOUT " + checkoutAgeDistribution.toUpperCase() + ", " + checkoutRead.name();
 	}
 
 	/**
@@ -195,132 +393,236 @@ public class CoreVersionWorkload extends Workload {
 	 */
 	@Override
 	public Object initThread(Properties p, int mythreadid, int threadcount) throws WorkloadException {
-		// TODO give each thread a subtree in the branch selector
-		// branchStrategy.addThreadWriter(p, mythreadid, threadcount,
-		// versionGraph.getNode(rootBranchName).getData());
-		return true;
-	}
-
-	private void addOperations(String opName, int numOps) {
-		for (int i = 0; i < numOps; ++i) {
-			operations.add(opName);
+		if (threadcount <= 1) {
+			return new ThreadState(td, mythreadid, threadcount, null, interleaving, operationCounts);
 		}
-	}
 
-	public void setupTransactionDistribution(Properties p) throws WorkloadException {
-
-		int numInserts = Integer.parseInt(p.getProperty(NUM_INSERTS_PROPERTY, NUM_INSERTS_PROPERTY_DEFAULT));
-		if (numInserts > 0) {
-			addOperations(NUM_INSERTS_PROPERTY, numInserts);
-		}
-
-		int numUpdates = Integer.parseInt(p.getProperty(NUM_UPDATES_PROPERTY, NUM_UPDATES_PROPERTY_DEFAULT));
-		if (numUpdates > 0) {
-			addOperations(NUM_UPDATES_PROPERTY, numUpdates);
+		// hand out the existing branches round-robin
+		BranchIds branchIds = branchStrategy.getBranchIds();
+		IntList ownedBranches = new IntList(branchIds.size() / threadcount + 1);
+		List<String> ownedBranchNames = new ArrayList<String>();
+		for (int i = mythreadid; i < branchIds.size(); i += threadcount) {
+			ownedBranches.add(i);
+			ownedBranchNames.add(branchIds.getName(i));
 		}
-
-		int numDeletes = Integer.parseInt(p.getProperty(NUM_DELETES_PROPERTY, NUM_DELETES_PROPERTY_DEFAULT));
-		if (numDeletes > 0) {
-			addOperations(NUM_DELETES_PROPERTY, numDeletes);
+		if (ownedBranches.size() == 0) {
+			throw new WorkloadException("Thread " + mythreadid + " owns none of the " + branchIds.size()
+					+ " branches, use at most as many threads as branches");
 		}
+		logger.info("Thread " + mythreadid + " owns branches: " + ownedBranchNames);
+		return new ThreadState(td, mythreadid, threadcount, ownedBranches, interleaving, operationCounts);
+	}
 
-		int numScans = Integer.parseInt(p.getProperty(NUM_SCANS_PROPERTY, NUM_SCANS_PROPERTY_DEFAULT));
-		if (numScans > 0) {
-			addOperations(NUM_SCANS_PROPERTY, numScans);
+	public void setupTransactionDistribution(Properties p) throws WorkloadException {
+		operationCounts = new long[Operation.values().length];
+		for (Operation op : Operation.values()) {
+			long numOps = Long.parseLong(p.getProperty(op.getName(), op.getDefaultCount()));
+			if (numOps < 0) {
+				throw new WorkloadException("Negative number of operations for " + op.getName() + ": " + numOps);
+			}
+			operationCounts[op.ordinal()] = numOps;
 		}
 
-		int numBranches = Integer.parseInt(p.getProperty(NUM_BRANCHES_PROPERTY, NUM_BRANCHES_PROPERTY_DEFAULT));
-		if (numBranches > 0) {
-			addOperations(NUM_BRANCHES_PROPERTY, numBranches);
+		try {
+			interleaving = Interleaving.fromName(p.getProperty(OperationSchedule.INTERLEAVING_PROPERTY,
+					OperationSchedule.INTERLEAVING_PROPERTY_DEFAULT));
+		} catch (IllegalArgumentException e) {
+			throw new WorkloadException(e);
 		}
+	}
 
-		int numMerges = Integer.parseInt(p.getProperty(NUM_MERGES_PROPERTY, NUM_MERGES_PROPERTY_DEFAULT));
-		if (numMerges > 0) {
-			addOperations(NUM_MERGES_PROPERTY, numMerges);
+	public void setupQueryParameters(Properties p) throws WorkloadException {
+		query3KeyRange = Integer.parseInt(p.getProperty(QUERY_3_KEY_RANGE_PROPERTY, QUERY_3_KEY_RANGE_PROPERTY_DEFAULT));
+		query3KeyFraction = -1;
+		if (p.getProperty(QUERY_3_KEY_FRACTION_PROPERTY) != null) {
+			query3KeyFraction = Double.parseDouble(p.getProperty(QUERY_3_KEY_FRACTION_PROPERTY));
+			if (query3KeyFraction < 0 || query3KeyFraction > 1) {
+				throw new WorkloadException("Invalid " + QUERY_3_KEY_FRACTION_PROPERTY + ": " + query3KeyFraction);
+			}
 		}
 
-		int numReads = Integer.parseInt(p.getProperty(NUM_READS_PROPERTY, NUM_READS_PROPERTY_DEFAULT));
-		if (numReads > 0) {
-			addOperations(NUM_READS_PROPERTY, numReads);
+		query4Field = Integer.parseInt(p.getProperty(QUERY_4_FIELD_PROPERTY, QUERY_4_FIELD_PROPERTY_DEFAULT));
+		if (query4Field < 0 || query4Field >= td.numFields()) {
+			throw new WorkloadException("Invalid " + QUERY_4_FIELD_PROPERTY + ": " + query4Field);
 		}
-
-		int numQuery3 = Integer.parseInt(p.getProperty(NUM_QUERY_3_PROPERTY, NUM_QUERY_3_PROPERTY_DEFAULT));
-		if (numQuery3 > 0) {
-			addOperations(NUM_QUERY_3_PROPERTY, numQuery3);
+		query4SubOperationName = "FIELD " + query4Field + " >= ALPHA";
+		int alpha = Integer.parseInt(p.getProperty(QUERY_4_ALPHA_PROPERTY, QUERY_4_ALPHA_PROPERTY_DEFAULT));
+		String alphaMaxProperty = p.getProperty(QUERY_4_ALPHA_MAX_PROPERTY);
+		int alphaMax = alphaMaxProperty != null ? Integer.parseInt(alphaMaxProperty)
+				: Math.max(alpha, tupleLoadStrategy.getNumKeys() - 1);
+		if (alphaMax < alpha) {
+			throw new WorkloadException("Invalid " + QUERY_4_ALPHA_MAX_PROPERTY + ": " + alphaMax);
 		}
-
-		int numQuery4 = Integer.parseInt(p.getProperty(NUM_QUERY_4_PROPERTY, NUM_QUERY_4_PROPERTY_DEFAULT));
-		if (numQuery4 > 0) {
-			addOperations(NUM_QUERY_4_PROPERTY, numQuery4);
+		String alphaDistribution = p.getProperty(QUERY_4_ALPHA_DISTRIBUTION_PROPERTY,
+				QUERY_4_ALPHA_DISTRIBUTION_PROPERTY_DEFAULT);
+		if (alphaDistribution.compareTo("constant") == 0) {
+			query4AlphaChooser = new ConstantIntegerGenerator(alpha);
+		} else if (alphaDistribution.compareTo("uniform") == 0) {
+			query4AlphaChooser = new UniformIntegerGenerator(alpha, alphaMax);
+		} else if (alphaDistribution.compareTo("zipfian") == 0) {
+			query4AlphaChooser = new ZipfianGenerator(alpha, alphaMax);
+		} else {
+			throw new WorkloadException("Unknown " + QUERY_4_ALPHA_DISTRIBUTION_PROPERTY + ": " + alphaDistribution);
 		}
+	}
 
-		int numDiff = Integer.parseInt(p.getProperty(NUM_DIFF_PROPERTY, NUM_DIFF_PROPERTY_DEFAULT));
-		if (numDiff > 0) {
-			addOperations(NUM_DIFF_PROPERTY, numDiff);
+	/**
+	 * Report the tuples the last transaction returned per million keys, next to
+	 * its latency. The value is not a latency, so it stays out of the latency
+	 * intervals; keys are interned in keys the first time a sub-operation is
+	 * seen.
+	 */
+	private void measureSelectivity(TransactionExecutor te, ConcurrentHashMap<String, MetricKey> keys,
+			String operationName, String subOperationName) {
+		int numKeys = tupleLoadStrategy.getNumKeys();
+		if (numKeys > 0) {
+			VersionDB db = te.getDB();
+			MetricKey key = keys.get(subOperationName);
+			if (key == null) {
+				key = keys.computeIfAbsent(subOperationName, (n) -> db.getMeasurements()
+						.getValueMetricKey(SELECTIVITY_METRIC_PREFIX + operationName + ", " + n));
+			}
+			long ppm = db.getLastOpCount() * 1000000L / numKeys;
+			db.getMeasurements().measureValue(key, (int) Math.min(ppm, Integer.MAX_VALUE));
 		}
+	}
 
-		int numCheckouts = Integer.parseInt(p.getProperty(NUM_CHECKOUTS_PROPERTY, NUM_CHECKOUTS_PROPERTY_DEFAULT));
-		if (numCheckouts > 0) {
-			addOperations(NUM_CHECKOUTS_PROPERTY, numCheckouts);
-		}
+	@Override
+	public String getNextOperationName(Object threadstate) {
+		Operation op = ((ThreadState) threadstate).schedule.peek();
+		return op == null ? null : op.getName();
 	}
 
 	@Override
 	public boolean doTransaction(VersionDB db, Object threadstate) {
-		if (!operationsIt.hasNext()) {
+		ThreadState ts = (ThreadState) threadstate;
+		Operation op = ts.schedule.next();
+		if (op == null) {
 			return false;
 		}
 
-		String op = operationsIt.next();
-
-		TransactionExecutor te = new TransactionExecutor(db, table, op);
-
-		if (op.compareTo(NUM_INSERTS_PROPERTY) == 0) {
-			doTransactionInsert(te);
-		} else if (op.compareTo(NUM_UPDATES_PROPERTY) == 0) {
-			doTransactionUpdate(te);
-		} else if (op.compareTo(NUM_DELETES_PROPERTY) == 0) {
-			doTransactionDelete(te);
-		} else if (op.compareTo(NUM_SCANS_PROPERTY) == 0) {
-			doTransactionScan(te);
-		} else if (op.compareTo(NUM_READS_PROPERTY) == 0) {
-			doTransactionRead(te);
-		} else if (op.compareTo(NUM_BRANCHES_PROPERTY) == 0) {
-			doTransactionBranch(te);
-		} else if (op.compareTo(NUM_MERGES_PROPERTY) == 0) {
-			doTransactionMerge(te);
-		} else if (op.compareTo(NUM_QUERY_3_PROPERTY) == 0) {
-			doTransactionQUERY_3(te);
-		} else if (op.compareTo(NUM_QUERY_4_PROPERTY) == 0) {
-			doTransactionQUERY_4(te);
-		} else if (op.compareTo(NUM_DIFF_PROPERTY) == 0) {
-			doTransactionDIFF(te);
-		} else if (op.compareTo(NUM_CHECKOUTS_PROPERTY) == 0) {
-			doTransactionCheckout(te);
-		} else {
-			throw new RuntimeException("invalid operation!");
+		TransactionExecutor te = new TransactionExecutor(db, table, op.getName(), op.getFirstRowName());
+
+		// reads of a checked-out version must not see another thread's checkout
+		boolean exclusive = op == Operation.BRANCH || op == Operation.MERGE
+				|| (op == Operation.CHECKOUT && checkoutRead != CheckoutRead.NONE);
+		Lock lock = exclusive ? treeLock.writeLock() : treeLock.readLock();
+		lock.lock();
+		try {
+			switch (op) {
+			case INSERT:
+				doTransactionInsert(te, ts);
+				break;
+			case UPDATE:
+				doTransactionUpdate(te, ts);
+				break;
+			case DELETE:
+				doTransactionDelete(te, ts);
+				break;
+			case SCAN:
+				doTransactionScan(te);
+				break;
+			case READ:
+				doTransactionRead(te, ts);
+				break;
+			case BRANCH:
+				doTransactionBranch(te, ts);
+				break;
+			case MERGE:
+				doTransactionMerge(te);
+				break;
+			case QUERY_3:
+				doTransactionQUERY_3(te);
+				break;
+			case QUERY_4:
+				doTransactionQUERY_4(te);
+				break;
+			case DIFF:
+				doTransactionDIFF(te);
+				break;
+			case CHECKOUT:
+				doTransactionCheckout(te, ts);
+				break;
+			case MULTI_SCAN:
+				doTransactionMultiScan(te, ts);
+				break;
+			default:
+				throw new RuntimeException("invalid operation!");
+			}
+		} finally {
+			lock.unlock();
 		}
 		logger.debug("Executed Transaction: " + te);
 
 		return true;
 	}
 
-	private void doTransactionCheckout(TransactionExecutor te) {
+	/**
+	 * Mark an operation on a branch picked from the partition of the thread
+	 * rather than by the branch strategy.
+	 */
+	private static <T extends OpData> T partitioned(T opData) {
+		opData.setSubOperationName(PARTITIONED_SUB_OPERATION_NAME);
+		return opData;
+	}
 
-		Transaction t = new Transaction("CHECKOUT") {
+	private void doTransactionCheckout(TransactionExecutor te, ThreadState ts) {
+		Transaction t;
+		if (checkoutAgeDistribution.compareTo(CHECKOUT_AGE_UNIFORM) == 0 && checkoutRead == CheckoutRead.NONE) {
+			t = new Transaction("CHECKOUT") {
 
-			@Override
-			public void execute(VersionDB db, String tableName) {
-				TransactionId tid = db.startTransaction();
-				db.randomCheckout(tid, tableName);
-				db.commitTransaction(tid);
-			}
-		};
+				@Override
+				public void execute(VersionDB db, String tableName) {
+					TransactionId tid = db.startTransaction();
+					db.randomCheckout(tid, tableName);
+					db.commitTransaction(tid);
+				}
+			};
+		} else {
+			final int age = nextCheckoutAge(ts, te.getDB().getNumCommits(table.tableName));
+			final Field primaryKey = checkoutRead == CheckoutRead.READ
+					? new IntField(ts.rand.nextInt(Math.max(1, tupleLoadStrategy.getNumKeys()))) : null;
+			t = new Transaction(checkoutSubOperationName) {
+
+				@Override
+				public void execute(VersionDB db, String tableName) {
+					TransactionId tid = db.startTransaction();
+					db.checkout(tid, tableName, age, checkoutRead, primaryKey);
+					db.commitTransaction(tid);
+				}
+			};
+		}
 		te.setTransaction(t);
 		te.doTransaction();
 
 	}
 
+	/**
+	 * Age of the commit to check out, 0 being the latest.
+	 */
+	private int nextCheckoutAge(ThreadState ts, int numCommits) {
+		if (numCommits <= 1 || checkoutAgeDistribution.compareTo(CHECKOUT_AGE_LATEST) == 0) {
+			return 0;
+		} else if (checkoutAgeDistribution.compareTo(CHECKOUT_AGE_UNIFORM) == 0) {
+			return ts.rand.nextInt(numCommits);
+		} else if (checkoutAgeDistribution.compareTo(CHECKOUT_AGE_EXPONENTIAL) == 0) {
+			if (ts.checkoutAgeChooser == null) {
+				ts.checkoutAgeChooser = new ExponentialGenerator(checkoutAgeMean, ts.rand);
+			}
+			return Math.min(ts.checkoutAgeChooser.nextInt(), numCommits - 1);
+		}
+
+		// skewed latest picks a commit index favoring the largest one
+		if (ts.commitChooser == null) {
+			ts.commitCounter = new CounterGenerator(numCommits);
+			ts.commitChooser = new SkewedLatestGenerator(ts.commitCounter, ts.rand);
+		}
+		while (ts.commitCounter.lastInt() < numCommits - 1) {
+			ts.commitCounter.nextInt();
+		}
+		return numCommits - 1 - ts.commitChooser.nextInt();
+	}
+
 	private void doTransactionDIFF(TransactionExecutor te) {
 		CompareOpData[] compareOpData = branchStrategy.getNextForCompare();
 		for (CompareOpData compareOp : compareOpData) {
@@ -328,7 +630,7 @@ public class CoreVersionWorkload extends Workload {
 			final String fromBranchName = branchNamesToScan[0];
 			final String toBranchName = branchNamesToScan[1];
 
-			String subOperationName = compareOp.subOperationName + " (" + fromBranchName + " --> " + toBranchName + ")";
+			String subOperationName = branchStrategy.getDiffSubOperationName(compareOp);
 
 			Transaction t = new Transaction(subOperationName, compareOp.branches) {
 
@@ -342,15 +644,16 @@ public class CoreVersionWorkload extends Workload {
 
 			te.setTransaction(t);
 			te.doTransaction();
-			Client.dropCaches();
+			te.getDB().getCachePolicy().afterSubOperation();
 		}
 	}
 
 	private void doTransactionQUERY_4(TransactionExecutor te) {
-		final int fieldno = 0;
-		final int alpha = 0;
+		final int fieldno = query4Field;
+		final int alpha = query4AlphaChooser.nextInt();
+		String subOperationName = query4SubOperationName;
 
-		Transaction t = new Transaction() {
+		Transaction t = new Transaction(subOperationName) {
 
 			@Override
 			public void execute(VersionDB db, String tableName) {
@@ -361,6 +664,7 @@ public class CoreVersionWorkload extends Workload {
 		};
 		te.setTransaction(t);
 		te.doTransaction();
+		measureSelectivity(te, query4SelectivityKeys, NUM_QUERY_4_PROPERTY, subOperationName);
 	}
 
 	private void doTransactionQUERY_3(TransactionExecutor te) {
@@ -370,13 +674,12 @@ public class CoreVersionWorkload extends Workload {
 			final String branchName1 = branchNamesToScan[0];
 			final String branchName2 = branchNamesToScan[1];
 
-			String subOperationName = compareOp.subOperationName + " (" + branchName1 + " <--> " + branchName2 + ")";
+			String subOperationName = branchStrategy.getQuery3SubOperationName(compareOp);
 
 			// This represents the per-branch selectivity of the join.
 			// So, how many records per branch will be a part of the join.
-			int numIOOpsForQuery = 1000000; // At most 1000 records in join
-
-			int predField = (int) Math.ceil(Math.sqrt(numIOOpsForQuery));
+			int predField = query3KeyFraction < 0 ? query3KeyRange
+					: (int) Math.ceil(query3KeyFraction * tupleLoadStrategy.getNumKeys());
 			Predicate pred = new Predicate(td.getPrimaryKeyIndex(), Predicate.Op.LESS_THAN, new IntField(predField));
 
 			Transaction t = new Transaction(subOperationName, compareOp.branches) {
@@ -390,7 +693,8 @@ public class CoreVersionWorkload extends Workload {
 			};
 			te.setTransaction(t);
 			te.doTransaction();
-			Client.dropCaches();
+			measureSelectivity(te, query3SelectivityKeys, NUM_QUERY_3_PROPERTY, compareOp.subOperationName);
+			te.getDB().getCachePolicy().afterSubOperation();
 		}
 	}
 
@@ -409,14 +713,66 @@ public class CoreVersionWorkload extends Workload {
 
 			te.setTransaction(t);
 			te.doTransaction();
-			Client.dropCaches();
+			te.getDB().getCachePolicy().afterSubOperation();
 		}
 	}
 
-	private void doTransactionDelete(TransactionExecutor te) {
-		DeleteOpData opData = branchStrategy.getNextForDelete();
+	/**
+	 * Scan several branches at once, so that layouts that share pages between
+	 * versions can answer in one pass.
+	 */
+	public void doTransactionMultiScan(TransactionExecutor te, ThreadState ts) {
+		final String[] branches;
+		if (multiScanFanout.equals(MULTI_SCAN_FANOUT_ALL)) {
+			List<String> branchNames = branchStrategy.getBranchNames();
+			branches = branchNames.toArray(new String[branchNames.size()]);
+		} else if (multiScanFanout.equals(MULTI_SCAN_FANOUT_ACTIVE)) {
+			branches = branchStrategy.getActiveBranches();
+		} else {
+			branches = new UniformBranchSelector(ts.rand, multiScanNumBranches)
+					.selectBranches(branchStrategy.getBranchNames());
+		}
+		String subOperationName = getMultiScanSubOperationName(branches.length);
+
+		Transaction t = new Transaction(subOperationName, branches) {
+
+			@Override
+			public void execute(VersionDB db, String tableName) {
+				TransactionId tid = db.startTransaction();
+				db.scan(tid, null, tableName, rcv, branches);
+				db.commitTransaction(tid);
+			}
+		};
+
+		te.setTransaction(t);
+		te.doTransaction();
+	}
+
+	private String getMultiScanSubOperationName(int numBranches) {
+		String[] names = multiScanSubOperationNames;
+		if (numBranches < names.length && names[numBranches] != null) {
+			return names[numBranches];
+		}
+		synchronized (this) {
+			names = Arrays.copyOf(multiScanSubOperationNames,
+					Math.max(multiScanSubOperationNames.length, numBranches + 1));
+			if (names[numBranches] == null) {
+				names[numBranches] = "MULTI-SCANNED: " + multiScanFanout.toUpperCase() + " (" + numBranches
+						+ " branches)";
+			}
+			multiScanSubOperationNames = names;
+			return names[numBranches];
+		}
+	}
+
+	private void doTransactionDelete(TransactionExecutor te, ThreadState ts) {
+		DeleteOpData opData = ts.isPartitioned() ? partitioned(
+				new DeleteOpData(branchStrategy.getBranchIds(), ts.nextOwnedBranch()))
+				: branchStrategy.getNextForDelete();
 		final String branchName = opData.branch;
-		IntList nextTupleIds = tupleLoadStrategy.getNextForDelete(branchName);
+		final VersionedTuple tup = ts.tup;
+		IntList nextTupleIds = tupleLoadStrategy.getNextForDelete(opData.branchId);
+		final BranchHandle branch = te.getDB().getBranchHandle(table.tableName, branchName);
 
 		for (IntField nextTupleId : nextTupleIds) {
 			tup.setPrimaryKey(nextTupleId);
@@ -426,7 +782,7 @@ public class CoreVersionWorkload extends Workload {
 				@Override
 				public void execute(VersionDB db, String tableName) {
 					TransactionId tid = db.startTransaction();
-					db.delete(tid, tableName, branchName, tup);
+					db.delete(tid, branch, tup);
 					db.commitTransaction(tid);
 				}
 			};
@@ -435,10 +791,14 @@ public class CoreVersionWorkload extends Workload {
 		}
 	}
 
-	public void doTransactionUpdate(TransactionExecutor te) {
-		UpdateOpData opData = branchStrategy.getNextForUpdate();
+	public void doTransactionUpdate(TransactionExecutor te, ThreadState ts) {
+		UpdateOpData opData = ts.isPartitioned() ? partitioned(
+				new UpdateOpData(branchStrategy.getBranchIds(), ts.nextOwnedBranch()))
+				: branchStrategy.getNextForUpdate();
 		final String branchName = opData.branch;
-		IntList nextTupleIds = tupleLoadStrategy.getNextForUpdate(branchName);
+		final VersionedTuple tup = ts.tup;
+		IntList nextTupleIds = tupleLoadStrategy.getNextForUpdate(opData.branchId);
+		final BranchHandle branch = te.getDB().getBranchHandle(table.tableName, branchName);
 
 		for (IntField nextTupleId : nextTupleIds) {
 			tup.setPrimaryKey(nextTupleId);
@@ -448,7 +808,7 @@ public class CoreVersionWorkload extends Workload {
 				@Override
 				public void execute(VersionDB db, String tableName) {
 					TransactionId tid = db.startTransaction();
-					db.update(tid, tableName, branchName, tup);
+					db.update(tid, branch, tup);
 					db.commitTransaction(tid);
 				}
 			};
@@ -458,10 +818,13 @@ public class CoreVersionWorkload extends Workload {
 
 	}
 
-	public void doTransactionRead(TransactionExecutor te) {
-		ReadOpData opData = branchStrategy.getNextForRead();
+	public void doTransactionRead(TransactionExecutor te, ThreadState ts) {
+		ReadOpData opData = ts.isPartitioned() ? partitioned(
+				new ReadOpData(branchStrategy.getBranchIds(), ts.nextOwnedBranch()))
+				: branchStrategy.getNextForRead();
 		final String branchName = opData.branch;
-		IntList nextTupleIds = tupleLoadStrategy.getNextForRead(branchName);
+		IntList nextTupleIds = tupleLoadStrategy.getNextForRead(opData.branchId);
+		final BranchHandle branch = te.getDB().getBranchHandle(table.tableName, branchName);
 
 		for (IntField nextTupleId : nextTupleIds) {
 			final IntField primaryKeyField = nextTupleId;
@@ -470,7 +833,7 @@ public class CoreVersionWorkload extends Workload {
 				@Override
 				public void execute(VersionDB db, String tableName) {
 					TransactionId tid = db.startTransaction();
-					db.read(tid, tableName, branchName, primaryKeyField);
+					db.read(tid, branch, primaryKeyField);
 					db.commitTransaction(tid);
 				}
 			};
@@ -479,10 +842,14 @@ public class CoreVersionWorkload extends Workload {
 		}
 	}
 
-	public void doTransactionInsert(TransactionExecutor te) {
-		InsertOpData opData = branchStrategy.getNextForInsert();
+	public void doTransactionInsert(TransactionExecutor te, ThreadState ts) {
+		InsertOpData opData = ts.isPartitioned() ? partitioned(
+				new InsertOpData(branchStrategy.getBranchIds(), ts.nextOwnedBranch()))
+				: branchStrategy.getNextForInsert();
 		final String branchName = opData.branch;
-		IntList nextTupleIds = tupleLoadStrategy.getNextForInsert(branchName);
+		final VersionedTuple tup = ts.tup;
+		IntList nextTupleIds = tupleLoadStrategy.getNextForInsert(opData.branchId);
+		final BranchHandle branch = te.getDB().getBranchHandle(table.tableName, branchName);
 
 		for (IntField nextTupleId : nextTupleIds) {
 			Field primaryKeyField = nextTupleId;
@@ -493,7 +860,7 @@ public class CoreVersionWorkload extends Workload {
 				@Override
 				public void execute(VersionDB db, String tableName) {
 					TransactionId tid = db.startTransaction();
-					db.insert(tid, tableName, branchName, tup);
+					db.insert(tid, branch, tup);
 					db.commitTransaction(tid);
 				}
 			};
@@ -502,13 +869,18 @@ public class CoreVersionWorkload extends Workload {
 		}
 	}
 
-	private void doTransactionBranch(TransactionExecutor te) {
+	private void doTransactionBranch(TransactionExecutor te, ThreadState ts) {
 		BranchOpData branchOpData = branchStrategy.getNextForBranch();
 		final String parentBranchName = branchOpData.parent;
 		final String childBranchName = branchOpData.child;
 
 		// update load strategy so it knows about the new branch
-		tupleLoadStrategy.addBranch(childBranchName, parentBranchName);
+		tupleLoadStrategy.addBranch(branchOpData.childId, branchOpData.parentId);
+
+		// the new branch belongs to the thread that created it
+		if (ts.isPartitioned()) {
+			ts.ownedBranches.add(branchOpData.childId);
+		}
 
 		Transaction t = new Transaction(branchOpData.subOperationName, parentBranchName) {
 
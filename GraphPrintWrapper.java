@@ -1,5 +1,6 @@
 package simpledb.versioned.benchmark;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.List;
 
@@ -26,6 +27,8 @@ public class GraphPrintWrapper extends VersionDB {
 		this.wrappedFile = wrappedFile;
 		vGraph = new PrettyVersionGraph();
 		setMeasurements(wrappedFile.getMeasurements());
+		setCachePolicy(wrappedFile.getCachePolicy());
+		setResultSink(wrappedFile.getResultSink());
 	}
 
 	@Override
@@ -122,6 +125,51 @@ public class GraphPrintWrapper extends VersionDB {
 		wrappedFile.delete(tid, tableName, branchName, tup);
 	}
 
+	@Override
+	public void insertAll(TransactionId tid, String tableName, String branchName, TupleSrc tuples) {
+		wrappedFile.insertAll(tid, tableName, branchName, tuples);
+	}
+
+	@Override
+	public BranchHandle getBranchHandle(String tableName, String branchName) {
+		return wrappedFile.getBranchHandle(tableName, branchName);
+	}
+
+	@Override
+	public void insert(TransactionId tid, BranchHandle branch, Tuple tup) {
+		wrappedFile.insert(tid, branch, tup);
+	}
+
+	@Override
+	public void update(TransactionId tid, BranchHandle branch, Tuple tup) {
+		wrappedFile.update(tid, branch, tup);
+	}
+
+	@Override
+	public void read(TransactionId tid, BranchHandle branch, Field primaryKey) {
+		wrappedFile.read(tid, branch, primaryKey);
+	}
+
+	@Override
+	public void delete(TransactionId tid, BranchHandle branch, Tuple tup) {
+		wrappedFile.delete(tid, branch, tup);
+	}
+
+	@Override
+	public void insertBatch(TransactionId tid, String tableName, String branchName, Tuple[] tups) {
+		wrappedFile.insertBatch(tid, tableName, branchName, tups);
+	}
+
+	@Override
+	public void updateBatch(TransactionId tid, String tableName, String branchName, Tuple[] tups) {
+		wrappedFile.updateBatch(tid, tableName, branchName, tups);
+	}
+
+	@Override
+	public void deleteBatch(TransactionId tid, String tableName, String branchName, Tuple[] tups) {
+		wrappedFile.deleteBatch(tid, tableName, branchName, tups);
+	}
+
 	@Override
 	public TupleSrc getNewTupleSrc(TupleDesc td, int numTuples) {
 		return wrappedFile.getNewTupleSrc(td, numTuples);
@@ -143,6 +191,17 @@ public class GraphPrintWrapper extends VersionDB {
 		wrappedFile.copyVersionedTable(tid, tableName, newTableName);
 	}
 
+	@Override
+	public void saveSnapshot(String tableName, File dir) throws IOException {
+		wrappedFile.saveSnapshot(tableName, dir);
+	}
+
+	@Override
+	public void restoreSnapshot(TransactionId tid, String tableName, TupleDesc desc, String type,
+			MergeProc mergeProc, File dir) throws IOException {
+		wrappedFile.restoreSnapshot(tid, tableName, desc, type, mergeProc, dir);
+	}
+
 	@Override
 	public void setPageSize(int pageSize) {
 		wrappedFile.setPageSize(pageSize);
@@ -198,6 +257,16 @@ public class GraphPrintWrapper extends VersionDB {
 		wrappedFile.randomCheckout(tid, tableName);
 	}
 
+	@Override
+	public int getNumCommits(String tableName) {
+		return wrappedFile.getNumCommits(tableName);
+	}
+
+	@Override
+	public void checkout(TransactionId tid, String tableName, int age, CheckoutRead read, Field primaryKey) {
+		wrappedFile.checkout(tid, tableName, age, read, primaryKey);
+	}
+
 	@Override
 	public List<String> getBranches(TransactionId tid, String tableName) {
 		return wrappedFile.getBranches(tid, tableName);
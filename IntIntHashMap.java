@@ -0,0 +1,203 @@
+package simpledb.versioned.benchmark;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * An open addressing hash map from int to int with linear probing, so that its
+ * memory use follows the number of keys it holds rather than the largest key.
+ * Removal shifts the following entries of a probe run back instead of leaving
+ * tombstones, so lookups never slow down after many removals.
+ */
+public class IntIntHashMap implements Serializable {
+
+	private static final int MIN_CAPACITY = 16;
+
+	/**
+	 * Marks free slots. A real key with this value is kept outside the table.
+	 */
+	private static final int FREE_KEY = Integer.MIN_VALUE;
+
+	private final int missingValue;
+
+	private int[] keys;
+	private int[] values;
+	private int mask;
+	private int shift;
+	private int size;
+
+	private boolean hasFreeKey;
+	private int freeKeyValue;
+
+	/**
+	 * @param initialCapacity
+	 *            number of keys the map can hold before it has to grow
+	 * @param missingValue
+	 *            value returned by get() and remove() for absent keys
+	 */
+	public IntIntHashMap(int initialCapacity, int missingValue) {
+		this.missingValue = missingValue;
+		allocate(tableSizeFor(initialCapacity));
+	}
+
+	public IntIntHashMap(int missingValue) {
+		this(MIN_CAPACITY, missingValue);
+	}
+
+	private static int tableSizeFor(int capacity) {
+		long needed = Math.max(MIN_CAPACITY, (4L * capacity + 2) / 3);
+		if (needed > (1 << 30)) {
+			throw new IllegalArgumentException("Invalid Size!");
+		}
+		return Integer.highestOneBit((int) needed - 1) << 1;
+	}
+
+	private void allocate(int tableSize) {
+		keys = new int[tableSize];
+		values = new int[tableSize];
+		Arrays.fill(keys, FREE_KEY);
+		mask = tableSize - 1;
+		shift = 32 - Integer.numberOfTrailingZeros(tableSize);
+	}
+
+	/**
+	 * Fibonacci hashing, so that runs of consecutive keys are spread over the
+	 * table.
+	 */
+	private int slot(int key) {
+		return (key * 0x9E3779B9) >>> shift;
+	}
+
+	private int find(int key) {
+		int i = slot(key);
+		while (true) {
+			int k = keys[i];
+			if (k == key) {
+				return i;
+			}
+			if (k == FREE_KEY) {
+				return -1;
+			}
+			i = (i + 1) & mask;
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean containsKey(int key) {
+		if (key == FREE_KEY) {
+			return hasFreeKey;
+		}
+		return find(key) >= 0;
+	}
+
+	public int get(int key) {
+		if (key == FREE_KEY) {
+			return hasFreeKey ? freeKeyValue : missingValue;
+		}
+		int i = find(key);
+		return i >= 0 ? values[i] : missingValue;
+	}
+
+	/**
+	 * @return the previous value of key, or the missing value
+	 */
+	public int put(int key, int value) {
+		if (key == FREE_KEY) {
+			int previous = hasFreeKey ? freeKeyValue : missingValue;
+			if (!hasFreeKey) {
+				size++;
+			}
+			hasFreeKey = true;
+			freeKeyValue = value;
+			return previous;
+		}
+		int i = slot(key);
+		while (true) {
+			int k = keys[i];
+			if (k == key) {
+				int previous = values[i];
+				values[i] = value;
+				return previous;
+			}
+			if (k == FREE_KEY) {
+				keys[i] = key;
+				values[i] = value;
+				size++;
+				// keep the load factor at or below 3/4
+				if (4L * size > 3L * keys.length) {
+					rehash(keys.length * 2);
+				}
+				return missingValue;
+			}
+			i = (i + 1) & mask;
+		}
+	}
+
+	/**
+	 * @return the value key was mapped to, or the missing value
+	 */
+	public int remove(int key) {
+		if (key == FREE_KEY) {
+			if (!hasFreeKey) {
+				return missingValue;
+			}
+			hasFreeKey = false;
+			size--;
+			return freeKeyValue;
+		}
+		int i = find(key);
+		if (i < 0) {
+			return missingValue;
+		}
+		int previous = values[i];
+		size--;
+		// move back entries whose probe run passes through the freed slot
+		int j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			int k = keys[j];
+			if (k == FREE_KEY) {
+				break;
+			}
+			int home = slot(k);
+			boolean canMove = i <= j ? (home <= i || home > j) : (home <= i && home > j);
+			if (canMove) {
+				keys[i] = k;
+				values[i] = values[j];
+				i = j;
+			}
+		}
+		keys[i] = FREE_KEY;
+		// shrink once mostly empty, so memory follows the live key count
+		if (keys.length > MIN_CAPACITY && 8L * size < keys.length) {
+			rehash(keys.length / 2);
+		}
+		return previous;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, FREE_KEY);
+		hasFreeKey = false;
+		size = 0;
+	}
+
+	private void rehash(int tableSize) {
+		int[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(tableSize);
+		for (int i = 0; i < oldKeys.length; i++) {
+			int k = oldKeys[i];
+			if (k != FREE_KEY) {
+				int j = slot(k);
+				while (keys[j] != FREE_KEY) {
+					j = (j + 1) & mask;
+				}
+				keys[j] = k;
+				values[j] = oldValues[i];
+			}
+		}
+	}
+}
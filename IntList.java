@@ -1,47 +1,86 @@
 package simpledb.versioned.benchmark;
 
+import java.io.Serializable;
 import java.util.Arrays;
-import java.util.BitSet;
 import java.util.Iterator;
 import java.util.Spliterator;
 import java.util.function.Consumer;
 
 import simpledb.IntField;
 
-public class IntList implements Iterable<IntField> {
+/**
+ * A dense list of ints. Elements are kept in elements[0, size); removing one
+ * moves the last element into its slot, so the list never holds dead slots and
+ * order is not preserved across removals.
+ */
+public class IntList implements Iterable<IntField>, Serializable {
 
 	protected static final int DEFAULT_INITIAL_SIZE = 1000000;
 
 	protected int[] elements;
-	protected int endPointer;
-	protected BitSet activeIndex;
 	protected int size;
 
 	public IntList() {
+		this(DEFAULT_INITIAL_SIZE);
+	}
+
+	public IntList(int initialSize) {
 		size = 0;
-		endPointer = -1;
-		activeIndex = new BitSet();
-		elements = new int[DEFAULT_INITIAL_SIZE];
+		elements = new int[Math.max(1, initialSize)];
 	}
 
 	public void add(int item) {
 		if (size == elements.length) {
 			expand(2 * elements.length);
 		}
-		elements[++endPointer] = item;
-		activeIndex.set(endPointer);
-		size++;
+		elements[size++] = item;
 	}
 
+	/**
+	 * Remove the element at index by moving the last element into its place.
+	 */
 	public void remove(int index) {
-		activeIndex.clear(index);
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Invalid index: " + index);
+		}
+		elements[index] = elements[--size];
+	}
+
+	/**
+	 * Remove the element at index by moving the later elements down one,
+	 * for lists whose order matters.
+	 */
+	public void removeInOrder(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Invalid index: " + index);
+		}
+		System.arraycopy(elements, index + 1, elements, index, size - index - 1);
 		size--;
 	}
 
+	/**
+	 * The last element.
+	 */
+	public int getLast() {
+		return get(size - 1);
+	}
+
+	/**
+	 * The elements in a new array.
+	 */
+	public int[] toArray() {
+		return Arrays.copyOf(elements, size);
+	}
+
+	public int get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Invalid index: " + index);
+		}
+		return elements[index];
+	}
+
 	public void clear() {
 		size = 0;
-		endPointer = -1;
-		activeIndex.clear();
 	}
 
 	private void expand(int targetSize) {
@@ -57,7 +96,7 @@ public class IntList implements Iterable<IntField> {
 
 	@Override
 	public Iterator<IntField> iterator() {
-		return new IntListIterator(elements, activeIndex);
+		return new IntListIterator(elements, size);
 	}
 
 	@Override
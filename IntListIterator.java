@@ -1,6 +1,5 @@
 package simpledb.versioned.benchmark;
 
-import java.util.BitSet;
 import java.util.Iterator;
 import java.util.function.Consumer;
 
@@ -10,31 +9,25 @@ import simpledb.MutableIntField;
 public class IntListIterator implements Iterator<IntField> {
 	final int[] elements;
 	final MutableIntField out;
-	BitSet activeIndex;
+	final int size;
 	int position;
 
-	public IntListIterator(int[] elements, BitSet activeIndex) {
+	public IntListIterator(int[] elements, int size) {
 		this.elements = elements;
-		this.activeIndex = activeIndex;
-		position = -1;
+		this.size = size;
+		position = 0;
 		out = new MutableIntField(-1);
-		setNext();
-	}
-
-	protected void setNext() {
-		position = activeIndex.nextSetBit(position + 1);
 	}
 
 	@Override
 	public boolean hasNext() {
-		return position != -1;
+		return position < size;
 	}
 
 	@Override
 	public IntField next() {
-		int element = elements[position];
+		int element = elements[position++];
 		out.setValue(element);
-		setNext();
 		return out;
 	}
 
@@ -48,4 +41,4 @@ public class IntListIterator implements Iterator<IntField> {
 		throw new UnsupportedOperationException();
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,266 @@
+package simpledb.versioned.benchmark;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import simpledb.versioned.benchmark.ycsb.generator.RangeIntegerGenerator;
+import simpledb.versioned.benchmark.ycsb.generator.UniformIntegerGenerator;
+
+/**
+ * The live keys of a branch, stored as a stack of layers shared with its
+ * ancestors so that branching does not copy the parent's keys.
+ * 
+ * The keys of a set sit at the positions [0, size) of a dense virtual array.
+ * Each layer holds the positions written in it, with their keys, and the
+ * position of each key placed in it. A position or a key is looked up from
+ * the top layer down, and a key is live only if the position found for it is
+ * below size and holds it. Adding a key places it at position size; removing
+ * one moves the key at the last position into its place. Neither touches
+ * lower layers, and stale entries left in them fail that check.
+ * 
+ * Only the top layer of a set is written to; branch() freezes it, pushes it
+ * onto the chain shared by the parent and the child, and gives both a new
+ * empty top layer. Branching is therefore independent of the number of keys.
+ * Random keys are drawn as a uniform position below size, so draws never
+ * reject and nothing is copied per branch. A set whose chain reaches
+ * MAX_LAYERS, or whose layers hold far more entries than it has live keys,
+ * is compacted into a single layer of its own.
+ */
+public class LayeredIntSetDistribution implements Serializable {
+
+    /**
+     * Deepest chain a set may push another layer onto.
+     */
+    static final int MAX_LAYERS = 32;
+
+    /**
+     * Sets with fewer layer entries than this are never compacted for stale
+     * entries.
+     */
+    static final int MIN_COMPACT_ENTRIES = 2048;
+
+    /**
+     * Missing value of keyAt, so that any other int can be a key.
+     */
+    static final int NO_KEY = Integer.MIN_VALUE;
+
+    /**
+     * Positions written in a layer with their keys, and the positions of the
+     * keys placed in it. Layers start small and grow with their writes.
+     */
+    static final class Layer implements Serializable {
+	final IntIntHashMap keyAt;
+	final IntIntHashMap positionOf;
+
+	Layer() {
+	    keyAt = new IntIntHashMap(NO_KEY);
+	    positionOf = new IntIntHashMap(-1);
+	}
+
+	Layer(int capacity) {
+	    keyAt = new IntIntHashMap(capacity, NO_KEY);
+	    positionOf = new IntIntHashMap(capacity, -1);
+	}
+
+	boolean isEmpty() {
+	    return keyAt.size() == 0 && positionOf.size() == 0;
+	}
+
+	int entries() {
+	    return keyAt.size() + positionOf.size();
+	}
+    }
+
+    /**
+     * An immutable stack of frozen layers, bottom first, with the number of
+     * entries of all of them.
+     */
+    static final class Chain implements Serializable {
+	static final Chain EMPTY = new Chain(new Layer[0], 0);
+
+	final Layer[] layers;
+	final int entries;
+
+	Chain(Layer[] layers, int entries) {
+	    this.layers = layers;
+	    this.entries = entries;
+	}
+
+	Chain push(Layer layer) {
+	    Layer[] newLayers = Arrays.copyOf(layers, layers.length + 1);
+	    newLayers[layers.length] = layer;
+	    return new Chain(newLayers, entries + layer.entries());
+	}
+    }
+
+    final RangeIntegerGenerator generator;
+    Chain chain;
+    Layer top;
+    int size;
+
+    public LayeredIntSetDistribution(RangeIntegerGenerator generator) {
+	this.generator = generator;
+	chain = Chain.EMPTY;
+	top = new Layer();
+	size = 0;
+    }
+
+    public LayeredIntSetDistribution() {
+	this(new UniformIntegerGenerator(0, 0));
+    }
+
+    /**
+     * Return a new set holding the same keys as this one, sharing all of its
+     * layers. Later changes to either set are not seen by the other.
+     */
+    public LayeredIntSetDistribution branch(RangeIntegerGenerator childGenerator) {
+	if (!top.isEmpty()) {
+	    if (chain.layers.length >= MAX_LAYERS) {
+		compact();
+	    }
+	    chain = chain.push(top);
+	    top = new Layer();
+	}
+	LayeredIntSetDistribution child = new LayeredIntSetDistribution(childGenerator);
+	child.chain = chain;
+	child.size = size;
+	childGenerator.updateRange(0, size - 1);
+	return child;
+    }
+
+    public int size() {
+	return size;
+    }
+
+    /**
+     * The key at position, or NO_KEY if no layer wrote it.
+     */
+    private int keyAt(int position) {
+	int key = top.keyAt.get(position);
+	for (int i = chain.layers.length - 1; key == NO_KEY && i >= 0; i--) {
+	    key = chain.layers[i].keyAt.get(position);
+	}
+	return key;
+    }
+
+    /**
+     * The last position key was placed at, or -1 if it never was. The key is
+     * only still there if it is live.
+     */
+    private int positionOf(int key) {
+	int position = top.positionOf.get(key);
+	for (int i = chain.layers.length - 1; position == -1 && i >= 0; i--) {
+	    position = chain.layers[i].positionOf.get(key);
+	}
+	return position;
+    }
+
+    /**
+     * The position of key if it is live, otherwise -1.
+     */
+    private int livePosition(int key) {
+	int position = positionOf(key);
+	if (position >= 0 && position < size && keyAt(position) == key) {
+	    return position;
+	}
+	return -1;
+    }
+
+    public boolean contains(int key) {
+	return livePosition(key) != -1;
+    }
+
+    public void add(int key) {
+	if (contains(key)) {
+	    return;
+	}
+	top.keyAt.put(size, key);
+	top.positionOf.put(key, size);
+	size++;
+	generator.updateRange(0, size - 1);
+    }
+
+    public void remove(int key) {
+	int position = livePosition(key);
+	if (position == -1) {
+	    return;
+	}
+	int last = size - 1;
+	if (position != last) {
+	    int lastKey = keyAt(last);
+	    top.keyAt.put(position, lastKey);
+	    top.positionOf.put(lastKey, position);
+	}
+	top.keyAt.remove(last);
+	top.positionOf.remove(key);
+	size--;
+	generator.updateRange(0, size - 1);
+	int entries = chain.entries + top.entries();
+	if (entries >= MIN_COMPACT_ENTRIES && entries > 4L * size) {
+	    compact();
+	}
+    }
+
+    public int getRandomKey() {
+	if (size == 0) {
+	    throw new IllegalStateException("No keys!");
+	}
+	return keyAt(generator.nextInt());
+    }
+
+    public void getRandomKeys(IntList outList, int numKeys) {
+	if (size == 0) {
+	    throw new IllegalStateException("No keys!");
+	}
+	while (numKeys > 0) {
+	    outList.add(keyAt(generator.nextInt()));
+	    numKeys--;
+	}
+    }
+
+    public RangeIntegerGenerator getDistribution() {
+	return generator;
+    }
+
+    /**
+     * Copy the live keys of this set into outList, in position order.
+     */
+    public void getKeys(IntList outList) {
+	for (int position = 0; position < size; position++) {
+	    outList.add(keyAt(position));
+	}
+    }
+
+    /**
+     * Replace the layers of this set by a single layer of its own holding
+     * only its live keys, at the same positions.
+     */
+    void compact() {
+	Layer layer = new Layer(size);
+	for (int position = 0; position < size; position++) {
+	    int key = keyAt(position);
+	    layer.keyAt.put(position, key);
+	    layer.positionOf.put(key, position);
+	}
+	chain = Chain.EMPTY;
+	top = layer;
+    }
+
+    public void addAll(LayeredIntSetDistribution keys) {
+	IntList newKeys = new IntList(Math.max(1, keys.size()));
+	keys.getKeys(newKeys);
+	addAll(newKeys);
+    }
+
+    public void addAll(IntList newKeys) {
+	for (int i = 0; i < newKeys.size(); i++) {
+	    add(newKeys.elements[i]);
+	}
+    }
+
+    public void removeAll(IntList existingKeysToRemove) {
+	for (int i = 0; i < existingKeysToRemove.size(); i++) {
+	    remove(existingKeysToRemove.elements[i]);
+	}
+    }
+}
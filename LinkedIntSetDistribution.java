@@ -1,22 +1,22 @@
 package simpledb.versioned.benchmark;
 
-import java.util.Arrays;
-import java.util.BitSet;
-
 import simpledb.versioned.benchmark.ycsb.generator.RangeIntegerGenerator;
 import simpledb.versioned.benchmark.ycsb.generator.UniformIntegerGenerator;
 
 public class LinkedIntSetDistribution extends IntList {
 
+    /**
+     * Branches start out this small and grow with the keys they own.
+     */
+    static final int INITIAL_SIZE = 1024;
+
     RangeIntegerGenerator generator;
-    int[] elementToIndexMap;
-    BitSet elementSet;
+    IntIntHashMap elementToIndexMap;
 
     public LinkedIntSetDistribution(RangeIntegerGenerator generator) {
+	super(INITIAL_SIZE);
 	this.generator = generator;
-	elementSet = new BitSet();
-	elementToIndexMap = new int[IntList.DEFAULT_INITIAL_SIZE];
-	Arrays.fill(elementToIndexMap, -1);
+	elementToIndexMap = new IntIntHashMap(INITIAL_SIZE, -1);
     }
 
     public LinkedIntSetDistribution() {
@@ -25,44 +25,38 @@ public class LinkedIntSetDistribution extends IntList {
 
     @Override
     public void add(int key) {
-	if (!elementSet.get(key)) {
-	    int mapSize = elementToIndexMap.length;
-	    if (key >= elementToIndexMap.length) {
-		expandMap(Math.max(key + 1, 2 * mapSize));
-	    }
+	if (!elementToIndexMap.containsKey(key)) {
 	    super.add(key);
-	    elementToIndexMap[key] = endPointer;
-	    elementSet.set(key);
-	    generator.updateRange(0, endPointer);
+	    elementToIndexMap.put(key, size - 1);
+	    generator.updateRange(0, size - 1);
 	}
     }
 
-    private void expandMap(int targetSize) {
-	if (targetSize <= elementToIndexMap.length) {
-	    throw new IllegalArgumentException("Invalid Size!");
-	}
-	elementToIndexMap = Arrays.copyOf(elementToIndexMap, targetSize);
-    }
-
     @Override
     public void remove(int key) {
-	if (elementSet.get(key)) {
-	    int index = elementToIndexMap[key];
+	int index = elementToIndexMap.remove(key);
+	if (index != -1) {
 	    super.remove(index);
-	    elementSet.clear(key);
+	    // the last key was moved into the freed slot
+	    if (index < size) {
+		elementToIndexMap.put(elements[index], index);
+	    }
+	    generator.updateRange(0, size - 1);
 	}
     }
 
+    @Override
+    public void clear() {
+	super.clear();
+	elementToIndexMap.clear();
+	generator.updateRange(0, -1);
+    }
+
     public int getRandomKey() {
 	if (size == 0) {
 	    throw new IllegalStateException("No keys!");
 	}
-	while (true) {
-	    int index = generator.nextInt();
-	    if (activeIndex.get(index)) {
-		return elements[index];
-	    }
-	}
+	return elements[generator.nextInt()];
     }
 
     public void getRandomKeys(IntList outList, int numKeys) {
@@ -70,13 +64,7 @@ public class LinkedIntSetDistribution extends IntList {
 	    throw new IllegalStateException("No keys!");
 	}
 	while (numKeys > 0) {
-	    while (true) {
-		int index = generator.nextInt();
-		if (activeIndex.get(index)) {
-		    outList.add(elements[index]);
-		    break;
-		}
-	    }
+	    outList.add(elements[generator.nextInt()]);
 	    numKeys--;
 	}
     }
@@ -86,28 +74,25 @@ public class LinkedIntSetDistribution extends IntList {
     }
 
     public void addAll(LinkedIntSetDistribution keys) {
-	BitSet bs = keys.activeIndex;
-	for (int i = bs.nextSetBit(0); i >= 0; i = bs.nextSetBit(i + 1)) {
+	for (int i = 0; i < keys.size; i++) {
 	    add(keys.elements[i]);
 	}
     }
 
     public void removeAll(IntList existingKeysToRemove) {
-	BitSet bs = existingKeysToRemove.activeIndex;
-	for (int i = bs.nextSetBit(0); i >= 0; i = bs.nextSetBit(i + 1)) {
+	for (int i = 0; i < existingKeysToRemove.size; i++) {
 	    remove(existingKeysToRemove.elements[i]);
 	}
     }
 
     public void addAll(IntList newKeys) {
-	BitSet bs = newKeys.activeIndex;
-	for (int i = bs.nextSetBit(0); i >= 0; i = bs.nextSetBit(i + 1)) {
+	for (int i = 0; i < newKeys.size; i++) {
 	    add(newKeys.elements[i]);
 	}
     }
 
     public boolean contains(int val) {
-	return elementSet.get(val);
+	return elementToIndexMap.containsKey(val);
     }
 
 }
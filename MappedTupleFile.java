@@ -0,0 +1,201 @@
+package simpledb.versioned.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.NoSuchElementException;
+
+import simpledb.IntField;
+import simpledb.TransactionId;
+import simpledb.Tuple;
+import simpledb.TupleDesc;
+import simpledb.versioned.benchmark.ycsb.VersionDB.TupleSrc;
+
+/**
+ * A file of pre-generated int tuples in a fixed-width binary format, read
+ * back through memory mapping so that loads from it neither go through the
+ * buffer pool nor allocate per tuple.
+ *
+ * Layout: a header of the magic number, the format version, the number of
+ * fields (ints) and the number of tuples (a long), then the tuples, row by
+ * row, each field a big-endian int.
+ */
+public class MappedTupleFile {
+	static final int MAGIC = 0x44545550;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 4 + 4 + 4 + 8;
+	static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * Largest part of the file mapped at once, mappings are limited to 2GB.
+	 */
+	static final long MAX_SEGMENT_SIZE = 1 << 30;
+
+	/**
+	 * Write numTuples tuples of the source to file, replacing it.
+	 */
+	public static void write(File file, TupleDesc td, TupleSrc src, long numTuples) throws IOException {
+		int numFields = td.numFields();
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+			raf.setLength(0);
+			ByteBuffer buf = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+			Tuple tup = new Tuple(td);
+			buf.putInt(MAGIC).putInt(VERSION).putInt(numFields).putLong(numTuples);
+			for (long i = 0; i < numTuples; i++) {
+				if (buf.remaining() < numFields * 4) {
+					flip(channel, buf);
+				}
+				if (!src.nextInto(tup)) {
+					throw new IllegalArgumentException("Tuple source ran out after " + i + " tuples");
+				}
+				for (int j = 0; j < numFields; j++) {
+					buf.putInt(((IntField) tup.getField(j)).getValue());
+				}
+			}
+			flip(channel, buf);
+		}
+	}
+
+	private static void flip(FileChannel channel, ByteBuffer buf) throws IOException {
+		buf.flip();
+		while (buf.hasRemaining()) {
+			channel.write(buf);
+		}
+		buf.clear();
+	}
+
+	/**
+	 * Reads the tuples start, start + stride, start + 2 * stride, ... of a
+	 * mapped tuple file. next() returns the same tuple every time, changing
+	 * its fields in place.
+	 */
+	public static class MappedTupleSrc implements TupleSrc {
+		final File file;
+		final TupleDesc td;
+		final long start;
+		final long stride;
+		final Tuple tup;
+
+		int numFields;
+		int rowSize;
+		long numTuples;
+		long segmentRows;
+		FileChannel channel;
+		RandomAccessFile raf;
+
+		MappedByteBuffer segment;
+		long segmentStart = -1;
+		long next;
+
+		public MappedTupleSrc(File file, TupleDesc td) {
+			this(file, td, 0, 1);
+		}
+
+		public MappedTupleSrc(File file, TupleDesc td, long start, long stride) {
+			if (start < 0 || stride <= 0) {
+				throw new IllegalArgumentException("Invalid start " + start + " or stride " + stride);
+			}
+			this.file = file;
+			this.td = td;
+			this.start = start;
+			this.stride = stride;
+			tup = new Tuple(td);
+		}
+
+		@Override
+		public void open(TransactionId tid) {
+			try {
+				raf = new RandomAccessFile(file, "r");
+				channel = raf.getChannel();
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+				}
+				header.flip();
+				if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION) {
+					throw new IOException("Not a tuple file: " + file);
+				}
+				numFields = header.getInt();
+				numTuples = header.getLong();
+				if (numFields != td.numFields()) {
+					throw new IOException(
+							"Tuple file " + file + " has " + numFields + " fields, expected " + td.numFields());
+				}
+				rowSize = numFields * 4;
+				segmentRows = MAX_SEGMENT_SIZE / rowSize;
+			} catch (IOException e) {
+				close();
+				throw new RuntimeException(e);
+			}
+			rewind();
+		}
+
+		@Override
+		public void rewind() {
+			next = start;
+		}
+
+		@Override
+		public void close() {
+			segment = null;
+			segmentStart = -1;
+			try {
+				if (raf != null) {
+					raf.close();
+				}
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			} finally {
+				raf = null;
+				channel = null;
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next < numTuples;
+		}
+
+		@Override
+		public Tuple next() {
+			if (!nextInto(tup)) {
+				throw new NoSuchElementException();
+			}
+			return tup;
+		}
+
+		@Override
+		public boolean nextInto(Tuple out) {
+			if (next >= numTuples) {
+				return false;
+			}
+			long row = next;
+			next += stride;
+			if (segment == null || row < segmentStart || row >= segmentStart + segmentRows) {
+				map(row);
+			}
+			int offset = (int) ((row - segmentStart) * rowSize);
+			for (int i = 0; i < numFields; i++) {
+				TupleSrc.setInt(out, i, segment.getInt(offset + 4 * i));
+			}
+			out.setRecordId(null);
+			return true;
+		}
+
+		/**
+		 * Map the segment of the file holding the row.
+		 */
+		private void map(long row) {
+			segmentStart = row - row % segmentRows;
+			long rows = Math.min(segmentRows, numTuples - segmentStart);
+			try {
+				segment = channel.map(MapMode.READ_ONLY, HEADER_SIZE + segmentStart * rowSize, rows * rowSize);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+}
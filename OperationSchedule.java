@@ -0,0 +1,185 @@
+package simpledb.versioned.benchmark;
+
+import java.util.Random;
+
+import simpledb.versioned.benchmark.ycsb.ResultSink;
+
+/**
+ * The sequence of operations one client thread runs, generated on the fly from
+ * the number of operations of each type, so that its memory does not grow
+ * with the operation count.
+ *
+ * Interleavings, set with the "op_interleaving" property:
+ * <ul>
+ * <li>phased: all operations of one type, then all of the next, in the order
+ * of Operation (the default)</li>
+ * <li>shuffled: a uniformly random order of exactly the configured counts,
+ * drawn by picking each next type with probability proportional to how many
+ * of its operations remain</li>
+ * <li>weighted: the configured total, each operation drawn independently with
+ * probability proportional to the configured counts, so counts per type only
+ * match on average</li>
+ * </ul>
+ */
+public class OperationSchedule {
+
+	public static final String INTERLEAVING_PROPERTY = "op_interleaving";
+	public static final String INTERLEAVING_PROPERTY_DEFAULT = "phased";
+
+	public static enum Operation {
+		INSERT(CoreVersionWorkload.NUM_INSERTS_PROPERTY, CoreVersionWorkload.NUM_INSERTS_PROPERTY_DEFAULT),
+		UPDATE(CoreVersionWorkload.NUM_UPDATES_PROPERTY, CoreVersionWorkload.NUM_UPDATES_PROPERTY_DEFAULT),
+		DELETE(CoreVersionWorkload.NUM_DELETES_PROPERTY, CoreVersionWorkload.NUM_DELETES_PROPERTY_DEFAULT),
+		SCAN(CoreVersionWorkload.NUM_SCANS_PROPERTY, CoreVersionWorkload.NUM_SCANS_PROPERTY_DEFAULT),
+		BRANCH(CoreVersionWorkload.NUM_BRANCHES_PROPERTY, CoreVersionWorkload.NUM_BRANCHES_PROPERTY_DEFAULT),
+		MERGE(CoreVersionWorkload.NUM_MERGES_PROPERTY, CoreVersionWorkload.NUM_MERGES_PROPERTY_DEFAULT),
+		READ(CoreVersionWorkload.NUM_READS_PROPERTY, CoreVersionWorkload.NUM_READS_PROPERTY_DEFAULT),
+		QUERY_3(CoreVersionWorkload.NUM_QUERY_3_PROPERTY, CoreVersionWorkload.NUM_QUERY_3_PROPERTY_DEFAULT),
+		QUERY_4(CoreVersionWorkload.NUM_QUERY_4_PROPERTY, CoreVersionWorkload.NUM_QUERY_4_PROPERTY_DEFAULT),
+		DIFF(CoreVersionWorkload.NUM_DIFF_PROPERTY, CoreVersionWorkload.NUM_DIFF_PROPERTY_DEFAULT),
+		CHECKOUT(CoreVersionWorkload.NUM_CHECKOUTS_PROPERTY, CoreVersionWorkload.NUM_CHECKOUTS_PROPERTY_DEFAULT),
+		MULTI_SCAN(CoreVersionWorkload.NUM_MULTI_SCANS_PROPERTY,
+				CoreVersionWorkload.NUM_MULTI_SCANS_PROPERTY_DEFAULT);
+
+		private final String name;
+		private final String firstRowName;
+		private final String defaultCount;
+
+		Operation(String name, String defaultCount) {
+			this.name = name;
+			this.firstRowName = name + ResultSink.TTFB_METRIC_SUFFIX;
+			this.defaultCount = defaultCount;
+		}
+
+		/**
+		 * The name the operation is configured and reported under.
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * The name the time to the first result tuple is reported under.
+		 */
+		public String getFirstRowName() {
+			return firstRowName;
+		}
+
+		/**
+		 * The number of operations of this type run when none is configured.
+		 */
+		public String getDefaultCount() {
+			return defaultCount;
+		}
+	}
+
+	public static enum Interleaving {
+		PHASED("phased"), SHUFFLED("shuffled"), WEIGHTED("weighted");
+
+		private final String name;
+
+		Interleaving(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public static Interleaving fromName(String name) {
+			for (Interleaving interleaving : values()) {
+				if (interleaving.name.equals(name)) {
+					return interleaving;
+				}
+			}
+			throw new IllegalArgumentException("Invalid operation interleaving: " + name);
+		}
+	}
+
+	static final Operation[] OPERATIONS = Operation.values();
+
+	final Interleaving interleaving;
+	final Random rand;
+
+	/**
+	 * Operations of each type left to run; for weighted, the weights.
+	 */
+	final long[] counts;
+
+	final long weightTotal;
+	long remaining;
+	int phase;
+	Operation next;
+
+	/**
+	 * @param counts
+	 *            number of operations of each type, indexed by ordinal
+	 */
+	public OperationSchedule(Interleaving interleaving, long[] counts, Random rand) {
+		if (counts.length != OPERATIONS.length) {
+			throw new IllegalArgumentException("Expected " + OPERATIONS.length + " counts");
+		}
+		this.interleaving = interleaving;
+		this.counts = counts.clone();
+		this.rand = rand;
+		for (long count : counts) {
+			remaining += count;
+		}
+		weightTotal = remaining;
+		phase = 0;
+	}
+
+	/**
+	 * The next operation without consuming it, or null once done.
+	 */
+	public Operation peek() {
+		if (next == null && remaining > 0) {
+			next = choose();
+			remaining--;
+		}
+		return next;
+	}
+
+	/**
+	 * Consume the next operation, or return null once done.
+	 */
+	public Operation next() {
+		Operation op = peek();
+		next = null;
+		return op;
+	}
+
+	private Operation choose() {
+		switch (interleaving) {
+		case PHASED:
+			while (counts[phase] == 0) {
+				phase++;
+			}
+			counts[phase]--;
+			return OPERATIONS[phase];
+		case SHUFFLED:
+			return pick(remaining, true);
+		case WEIGHTED:
+			return pick(weightTotal, false);
+		default:
+			throw new IllegalStateException();
+		}
+	}
+
+	/**
+	 * Pick a type with probability proportional to its count, out of total.
+	 */
+	private Operation pick(long total, boolean consume) {
+		long r = (long) (rand.nextDouble() * total);
+		for (int i = 0; i < counts.length; i++) {
+			if (r < counts[i]) {
+				if (consume) {
+					counts[i]--;
+				}
+				return OPERATIONS[i];
+			}
+			r -= counts[i];
+		}
+		throw new IllegalStateException();
+	}
+}
@@ -1,15 +1,21 @@
 package simpledb.versioned.benchmark;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -44,6 +50,7 @@ import simpledb.versioned.VersionedBufferPool;
 import simpledb.versioned.VersionedDbFile;
 import simpledb.versioned.VersionedDbFile.MergeSpec;
 import simpledb.versioned.benchmark.ycsb.DBException;
+import simpledb.versioned.benchmark.ycsb.ResultSink;
 import simpledb.versioned.benchmark.ycsb.VersionDB;
 import simpledb.versioned.heapfile.git.GitVersionedHeapFile;
 import simpledb.versioned.heapfile.git2.GitV2VersionedHeapFile;
@@ -72,6 +79,13 @@ public class SimpleDBWrapper extends VersionDB {
 	static final String GIT2_TYPE = "GIT2";
 	static final List<String> TYPES = ImmutableList.of(VF_TYPE, TF_TYPE, HYBRID_TYPE, GIT_TYPE, GIT2_TYPE);
 
+	/**
+	 * Layout of a snapshot directory.
+	 */
+	static final String SNAPSHOT_FILES_DIR = "files";
+	static final String SNAPSHOT_VERSION_FILE_NAME = "version_file";
+	static final String SNAPSHOT_COMMITS_FILE_NAME = "commits.ser";
+
 	public static class VersionedDbFileUtility {
 		public static VersionSearchIterator makeVersionSearchIterator(VersionedDbFile vdbf, TransactionId tid,
 				VersionPredicate vpred) {
@@ -130,74 +144,123 @@ public class SimpleDBWrapper extends VersionDB {
 
 		@Override
 		public boolean hasNext() {
-			if (!open) {
-				throw new IllegalStateException("Not open!");
-			}
+			checkOpen();
 			try {
 				return iterator.hasNext();
-			} catch (DbException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			} catch (TransactionAbortedException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+			} catch (DbException | TransactionAbortedException e) {
+				throw new RuntimeException(e);
 			}
-			return false;
 		}
 
+		/**
+		 * The tuple the file iterator hands out, which may be one held by
+		 * its page; use nextInto to get a copy.
+		 */
 		@Override
 		public Tuple next() {
-			if (!open) {
-				throw new IllegalStateException("Not open!");
-			}
+			checkOpen();
 			try {
 				return iterator.next();
-			} catch (NoSuchElementException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			} catch (DbException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			} catch (TransactionAbortedException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+			} catch (DbException | TransactionAbortedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public boolean nextInto(Tuple tup) {
+			checkOpen();
+			try {
+				if (!iterator.hasNext()) {
+					return false;
+				}
+				TupleSrc.copyInto(iterator.next(), tup);
+				return true;
+			} catch (DbException | TransactionAbortedException e) {
+				throw new RuntimeException(e);
 			}
-			return null;
 		}
 
 		@Override
 		public void remove() {
-			// TODO Auto-generated method stub
+			throw new UnsupportedOperationException();
 		}
 
 		@Override
 		public void forEachRemaining(Consumer<? super Tuple> action) {
-			// TODO Auto-generated method stub
+			while (hasNext()) {
+				action.accept(next());
+			}
 		}
 
 		@Override
 		public void rewind() {
-			if (!open) {
-				throw new IllegalStateException("Not open!");
-			}
+			checkOpen();
 			try {
 				iterator.rewind();
-			} catch (DbException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			} catch (TransactionAbortedException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+			} catch (DbException | TransactionAbortedException e) {
+				throw new RuntimeException(e);
 			}
 		}
 
+		private void checkOpen() {
+			if (!open) {
+				throw new IllegalStateException("Not open!");
+			}
+		}
 	}
 
-	private final Map<String, List<CommitId>> commits;
+	/**
+	 * Commits and version files of each table. Like the catalog they are
+	 * shared by the wrappers of all client threads.
+	 */
+	private static final Map<String, List<CommitId>> commits = new ConcurrentHashMap<String, List<CommitId>>();
+	private static final Map<String, File> versionFiles = new ConcurrentHashMap<String, File>();
+
+	/**
+	 * A table's file and the ids of its branches, resolved from the catalog
+	 * once. Branches and merges leave the ids of existing branches alone, and
+	 * new branches are resolved on first use, so a handle is only dropped,
+	 * and marked invalid, when the table is deleted, replaced or restored.
+	 */
+	static final class TableHandle {
+		final VersionedDbFile vdf;
+		final Map<String, BranchId> branchIds = new ConcurrentHashMap<String, BranchId>();
+		volatile boolean valid = true;
+
+		TableHandle(VersionedDbFile vdf) {
+			this.vdf = vdf;
+		}
+	}
+
+	static final class SimpleDBBranchHandle implements BranchHandle {
+		final String tableName;
+		final String branchName;
+		// bid is written before table, so whoever sees a table sees its bid
+		volatile BranchId bid;
+		volatile TableHandle table;
+
+		SimpleDBBranchHandle(String tableName, String branchName, TableHandle table, BranchId bid) {
+			this.tableName = tableName;
+			this.branchName = branchName;
+			this.bid = bid;
+			this.table = table;
+		}
+
+		@Override
+		public String getTableName() {
+			return tableName;
+		}
+
+		@Override
+		public String getBranchName() {
+			return branchName;
+		}
+	}
+
+	private static final Map<String, TableHandle> tableHandles = new ConcurrentHashMap<String, TableHandle>();
 	private Random checkoutSelector;
 
 	public SimpleDBWrapper() {
-		commits = new HashMap<String, List<CommitId>>();
 		try {
 			checkoutSelector = new Random(
 					Long.parseLong(System.getProperty(Constants.RNG_SEED)) * Constants.CHECKOUT_SELECTOR_SEED_MUL);
@@ -230,6 +293,8 @@ public class SimpleDBWrapper extends VersionDB {
 		Integer tableId = getTableId(tableName);
 		deleteTableData(tableId);
 		Database.getCatalog().removeTable(tableId);
+		versionFiles.remove(tableName);
+		invalidateTableHandle(tableName);
 	}
 
 	@Override
@@ -242,6 +307,9 @@ public class SimpleDBWrapper extends VersionDB {
 		}
 
 		Database.getCatalog().clear();
+		for (String tableName : tableHandles.keySet()) {
+			invalidateTableHandle(tableName);
+		}
 	}
 
 	private void deleteTableData(int tableId) {
@@ -274,16 +342,58 @@ public class SimpleDBWrapper extends VersionDB {
 		Database.getCatalog().getDatabaseFile(getTableId(tableName)).force();
 	}
 
+	private TableHandle getTableHandle(String tableName) {
+		return tableHandles.computeIfAbsent(tableName, (name) -> {
+			return new TableHandle((VersionedDbFile) Database.getCatalog().getDatabaseFile(getTableId(name)));
+		});
+	}
+
+	private void invalidateTableHandle(String tableName) {
+		TableHandle table = tableHandles.remove(tableName);
+		if (table != null) {
+			table.valid = false;
+		}
+	}
+
+	private VersionedDbFile getVersionedDbFile(String tableName) {
+		return getTableHandle(tableName).vdf;
+	}
+
 	private BranchId getBranchId(TransactionId tid, String tableName, String branchName) {
-		VersionedDbFile vdf = (VersionedDbFile) Database.getCatalog().getDatabaseFile(getTableId(tableName));
-		BranchId bid = vdf.getBranchIdByName(branchName);
+		TableHandle table = getTableHandle(tableName);
+		BranchId bid = table.branchIds.get(branchName);
+		if (bid == null) {
+			bid = table.vdf.getBranchIdByName(branchName);
+			if (bid != null) {
+				table.branchIds.put(branchName, bid);
+			}
+		}
+		return bid;
+	}
+
+	/**
+	 * The branch id of a handle. If the table was replaced since the handle
+	 * was made, the handle is bound to the new table once its branch is
+	 * found there again.
+	 */
+	private BranchId getBranchId(BranchHandle branch) {
+		SimpleDBBranchHandle handle = (SimpleDBBranchHandle) branch;
+		TableHandle table = handle.table;
+		if (table.valid) {
+			return handle.bid;
+		}
+		table = getTableHandle(handle.tableName);
+		BranchId bid = getBranchId(null, handle.tableName, handle.branchName);
+		if (bid != null) {
+			handle.bid = bid;
+			handle.table = table;
+		}
 		return bid;
 	}
 
 	private CommitId getCreationCommitId(TransactionId tid, String tableName, String branchName) {
-		VersionedDbFile vdf = (VersionedDbFile) Database.getCatalog().getDatabaseFile(getTableId(tableName));
-		BranchId bid = vdf.getBranchIdByName(branchName);
-		return vdf.getCreationCommitId(bid);
+		BranchId bid = getBranchId(tid, tableName, branchName);
+		return getVersionedDbFile(tableName).getCreationCommitId(bid);
 	}
 
 	private int getTableId(String tableName) {
@@ -301,17 +411,50 @@ public class SimpleDBWrapper extends VersionDB {
 
 	private void exceuteOp(DbIterator op) {
 		opCount = 0;
+		opCount = drainOp(op);
+	}
+
+	/**
+	 * Open the query operator and feed its tuples to the result sink until it
+	 * is drained or the sink wants no more, then close it.
+	 */
+	private void consumeOp(DbIterator op) {
+		ResultSink sink = getResultSink();
+		opCount = 0;
+		int count = 0;
+		try {
+			op.open();
+			boolean more = true;
+			while (more && op.hasNext()) {
+				more = sink.accept(op.next());
+				count++;
+			}
+		} catch (DbException | TransactionAbortedException e) {
+			throw new RuntimeException(e);
+		} finally {
+			op.close();
+		}
+		opCount = count;
+	}
+
+	/**
+	 * Open, drain and close the operator, returning the number of tuples it
+	 * produced.
+	 */
+	private int drainOp(DbIterator op) {
+		int count = 0;
 		try {
 			op.open();
 			while (op.hasNext()) {
 				op.next();
-				opCount++;
+				count++;
 			}
 		} catch (DbException | TransactionAbortedException e) {
 			throw new RuntimeException(e);
 		} finally {
 			op.close();
 		}
+		return count;
 	}
 
 	@Override
@@ -389,15 +532,72 @@ public class SimpleDBWrapper extends VersionDB {
 		opCount = 1;
 		List<CommitId> commitForTable = commits.get(tableName);
 		CommitId selectedCommit = commitForTable.get(checkoutSelector.nextInt(commitForTable.size()));
-		VersionedDbFile versionedDbFile = ((VersionedDbFile) Database.getCatalog()
-				.getDatabaseFile(getTableId(tableName)));
+		VersionedDbFile versionedDbFile = getVersionedDbFile(tableName);
+		try {
+			versionedDbFile.checkout(tid, selectedCommit);
+		} catch (DbException | TransactionAbortedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public int getNumCommits(String tableName) {
+		return commits.get(tableName).size();
+	}
+
+	@Override
+	public void checkout(TransactionId tid, String tableName, int age, CheckoutRead read, Field primaryKey) {
+		List<CommitId> commitForTable = commits.get(tableName);
+		CommitId selectedCommit;
+		synchronized (commitForTable) {
+			int latest = commitForTable.size() - 1;
+			selectedCommit = commitForTable.get(latest - Math.min(age, latest));
+		}
+		VersionedDbFile versionedDbFile = getVersionedDbFile(tableName);
 		try {
 			versionedDbFile.checkout(tid, selectedCommit);
+			if (read == CheckoutRead.NONE) {
+				opCount = 1;
+			} else {
+				consumeCheckedOut(versionedDbFile, tid, read == CheckoutRead.READ ? primaryKey : null);
+			}
 		} catch (DbException | TransactionAbortedException e) {
 			throw new RuntimeException(e);
 		}
 	}
 
+	/**
+	 * Feed the checked-out version of the file to the result sink, or, given a
+	 * primary key, only the tuple with that key. There is no index on a
+	 * checked-out version, so a key lookup scans until it finds the key.
+	 */
+	private void consumeCheckedOut(VersionedDbFile vdf, TransactionId tid, Field primaryKey)
+			throws DbException, TransactionAbortedException {
+		ResultSink sink = getResultSink();
+		int primaryKeyIndex = vdf.getTupleDesc().getPrimaryKeyIndex();
+		opCount = 0;
+		int count = 0;
+		DbFileIterator iterator = vdf.iterator(tid);
+		try {
+			iterator.open();
+			boolean more = true;
+			while (more && iterator.hasNext()) {
+				Tuple tup = iterator.next();
+				if (primaryKey == null) {
+					more = sink.accept(tup);
+					count++;
+				} else if (primaryKey.equals(tup.getField(primaryKeyIndex))) {
+					sink.accept(tup);
+					count++;
+					more = false;
+				}
+			}
+		} finally {
+			iterator.close();
+		}
+		opCount = count;
+	}
+
 	@Override
 	public long getSize(String tableName) {
 		return Database.getCatalog().getDatabaseFile(getTableId(tableName)).getSize();
@@ -405,7 +605,7 @@ public class SimpleDBWrapper extends VersionDB {
 
 	@Override
 	public void prepareForWorkload(String tableName) {
-		((VersionedDbFile) Database.getCatalog().getDatabaseFile(getTableId(tableName))).repack();
+		getVersionedDbFile(tableName).repack();
 	}
 
 	@Override
@@ -415,14 +615,12 @@ public class SimpleDBWrapper extends VersionDB {
 
 	@Override
 	public String getVersionMetaDataStringRep(String tableName) {
-		return ((VersionedDbFile) Database.getCatalog().getDatabaseFile(getTableId(tableName)))
-				.getVersionMetaDataStringRep();
+		return getVersionedDbFile(tableName).getVersionMetaDataStringRep();
 	}
 
 	@Override
 	public List<String> getBranches(TransactionId tid, String tableName) {
-		return ((VersionedDbFile) Database.getCatalog().getDatabaseFile(getTableId(tableName))).getBranches(tid)
-				.stream().map((Function<? super BranchId, String>) (bid) -> {
+		return getVersionedDbFile(tableName).getBranches(tid).stream().map((Function<? super BranchId, String>) (bid) -> {
 					return bid.getName();
 				}).collect(Collectors.toList());
 	}
@@ -431,25 +629,49 @@ public class SimpleDBWrapper extends VersionDB {
 	public void createVersionedTable(TransactionId tid, String tableName, TupleDesc td, String type,
 			MergeProc mergeProc) {
 		File versionFile = new File(Database.getBaseDir(), type + UUID.randomUUID());
-		VersionedDbFile vdf = null;
+		VersionedDbFile vdf = makeVersionedDbFile(type, versionFile, td);
+
+		invalidateTableHandle(tableName);
+		Database.getCatalog().addTable(vdf, tableName);
+		versionFiles.put(tableName, versionFile);
+		vdf.setup(tid);
+
+		vdf.setMergeSpec(getMergeSpec(mergeProc));
+
+		// should only have master here
+		List<CommitId> initialCommits = new ArrayList<CommitId>();
+		int count = 0;
+		for (BranchId bid : vdf.getBranches(tid)) {
+			if (count > 1) {
+				throw new IllegalStateException("Too many branches from load, expected 1. Not stateless.");
+			}
+			count++;
+			CommitId creationCommitId = getCreationCommitId(tid, tableName, bid.getName());
+			if (creationCommitId != null) {
+				initialCommits.add(creationCommitId);
+			}
+		}
+		commits.put(tableName, Collections.synchronizedList(initialCommits));
+	}
+
+	private VersionedDbFile makeVersionedDbFile(String type, File versionFile, TupleDesc td) {
 		if (type.equals(VF_TYPE)) {
-			vdf = VersionedDbFileUtility.makeVersionFirstFile(versionFile, td);
+			return VersionedDbFileUtility.makeVersionFirstFile(versionFile, td);
 		} else if (type.equals(TF_TYPE)) {
-			vdf = VersionedDbFileUtility.makeTupleFirstFile(versionFile, td);
+			return VersionedDbFileUtility.makeTupleFirstFile(versionFile, td);
 		} else if (type.equals(HYBRID_TYPE)) {
-			vdf = VersionedDbFileUtility.makeHybridFile(versionFile, td);
+			return VersionedDbFileUtility.makeHybridFile(versionFile, td);
 		} else if (type.equals(GIT_TYPE)) {
-			vdf = VersionedDbFileUtility.makeGitFile(versionFile, td);
+			return VersionedDbFileUtility.makeGitFile(versionFile, td);
 		} else if (type.equals(GIT2_TYPE)) {
 			versionFile.mkdir();
-			vdf = VersionedDbFileUtility.makeGit2File(versionFile, td);
+			return VersionedDbFileUtility.makeGit2File(versionFile, td);
 		} else {
 			throw new IllegalArgumentException("Versioned Heap File Type: " + type + " not supported!");
 		}
+	}
 
-		Database.getCatalog().addTable(vdf, tableName);
-		vdf.setup(tid);
-
+	private MergeSpec getMergeSpec(MergeProc mergeProc) {
 		MergeSpec mergeSpec = null;
 
 		switch (mergeProc) {
@@ -460,23 +682,61 @@ public class SimpleDBWrapper extends VersionDB {
 			mergeSpec = MergeSpec.TWO_WAY;
 			break;
 		}
+		return mergeSpec;
+	}
 
-		vdf.setMergeSpec(mergeSpec);
-
-		// should only have master here
-		List<CommitId> initialCommits = new ArrayList<CommitId>();
-		int count = 0;
-		for (BranchId bid : vdf.getBranches(tid)) {
-			if (count > 1) {
-				throw new IllegalStateException("Too many branches from load, expected 1. Not stateless.");
+	@Override
+	public void saveSnapshot(String tableName, File dir) throws IOException {
+		File filesDir = new File(dir, SNAPSHOT_FILES_DIR);
+		for (File file : Database.getCatalog().getDatabaseFile(getTableId(tableName)).getFiles()) {
+			logger.info("Snapshotting: " + file);
+			if (file.isDirectory()) {
+				FileUtils.copyDirectoryToDirectory(file, filesDir);
+			} else {
+				FileUtils.copyFileToDirectory(file, filesDir);
 			}
-			count++;
-			CommitId creationCommitId = getCreationCommitId(tid, tableName, bid.getName());
-			if (creationCommitId != null) {
-				initialCommits.add(creationCommitId);
+		}
+		FileUtils.writeStringToFile(new File(dir, SNAPSHOT_VERSION_FILE_NAME), versionFiles.get(tableName).getName(),
+				StandardCharsets.UTF_8);
+		try (ObjectOutputStream out = new ObjectOutputStream(
+				new FileOutputStream(new File(dir, SNAPSHOT_COMMITS_FILE_NAME)))) {
+			out.writeObject(new ArrayList<CommitId>(commits.get(tableName)));
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public void restoreSnapshot(TransactionId tid, String tableName, TupleDesc td, String type, MergeProc mergeProc,
+			File dir) throws IOException {
+		String versionFileName = FileUtils.readFileToString(new File(dir, SNAPSHOT_VERSION_FILE_NAME),
+				StandardCharsets.UTF_8);
+		File versionFile = new File(Database.getBaseDir(), versionFileName);
+		File[] files = new File(dir, SNAPSHOT_FILES_DIR).listFiles();
+		if (files == null) {
+			throw new IOException("No table files in snapshot: " + dir);
+		}
+		for (File file : files) {
+			logger.info("Restoring: " + file);
+			if (file.isDirectory()) {
+				FileUtils.copyDirectoryToDirectory(file, versionFile.getParentFile());
+			} else {
+				FileUtils.copyFileToDirectory(file, versionFile.getParentFile());
 			}
 		}
-		commits.put(tableName, initialCommits);
+
+		// the files already hold the version graph, so no setup
+		VersionedDbFile vdf = makeVersionedDbFile(type, versionFile, td);
+		invalidateTableHandle(tableName);
+		Database.getCatalog().addTable(vdf, tableName);
+		versionFiles.put(tableName, versionFile);
+		vdf.setMergeSpec(getMergeSpec(mergeProc));
+
+		try (ObjectInputStream in = new ObjectInputStream(
+				new FileInputStream(new File(dir, SNAPSHOT_COMMITS_FILE_NAME)))) {
+			commits.put(tableName, Collections.synchronizedList((List<CommitId>) in.readObject()));
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e);
+		}
 	}
 
 	@Override
@@ -534,7 +794,7 @@ public class SimpleDBWrapper extends VersionDB {
 		DbIterator scanOp;
 		try {
 			scanOp = Database.getBufferPool().scan(tid, tableName, reportContainingVersions, bids);
-			exceuteOp(scanOp);
+			consumeOp(scanOp);
 		} catch (DbException | TransactionAbortedException e) {
 			throw new RuntimeException(e);
 		}
@@ -584,13 +844,127 @@ public class SimpleDBWrapper extends VersionDB {
 		}
 	}
 
+	@Override
+	public BranchHandle getBranchHandle(String tableName, String branchName) {
+		TableHandle table = getTableHandle(tableName);
+		BranchId bid = getBranchId(null, tableName, branchName);
+		if (bid == null) {
+			throw new IllegalArgumentException("Branch does not exist: " + branchName);
+		}
+		return new SimpleDBBranchHandle(tableName, branchName, table, bid);
+	}
+
+	@Override
+	public void insert(TransactionId tid, BranchHandle branch, Tuple tup) {
+		try {
+			DbIterator insertOp = Database.getBufferPool().insert(tid, branch.getTableName(), getBranchId(branch),
+					tup);
+			exceuteOp(insertOp);
+		} catch (DbException | TransactionAbortedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void update(TransactionId tid, BranchHandle branch, Tuple tup) {
+		try {
+			DbIterator updateOp = Database.getBufferPool().update(tid, branch.getTableName(), getBranchId(branch),
+					tup);
+			exceuteOp(updateOp);
+		} catch (DbException | TransactionAbortedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void read(TransactionId tid, BranchHandle branch, Field primaryKey) {
+		try {
+			DbIterator readOp = Database.getBufferPool().read(tid, branch.getTableName(), getBranchId(branch),
+					primaryKey);
+			exceuteOp(readOp);
+		} catch (DbException | TransactionAbortedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void delete(TransactionId tid, BranchHandle branch, Tuple tup) {
+		try {
+			DbIterator deleteOp = Database.getBufferPool().delete(tid, branch.getTableName(), getBranchId(branch),
+					tup);
+			exceuteOp(deleteOp);
+		} catch (DbException | TransactionAbortedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void insertBatch(TransactionId tid, String tableName, String branchName, Tuple[] tups) {
+		try {
+			BranchId bid = getBranchId(tid, tableName, branchName);
+			int count = 0;
+			for (Tuple tup : tups) {
+				count += drainOp(Database.getBufferPool().insert(tid, tableName, bid, tup));
+			}
+			opCount = count;
+		} catch (DbException | TransactionAbortedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void updateBatch(TransactionId tid, String tableName, String branchName, Tuple[] tups) {
+		try {
+			BranchId bid = getBranchId(tid, tableName, branchName);
+			int count = 0;
+			for (Tuple tup : tups) {
+				count += drainOp(Database.getBufferPool().update(tid, tableName, bid, tup));
+			}
+			opCount = count;
+		} catch (DbException | TransactionAbortedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void deleteBatch(TransactionId tid, String tableName, String branchName, Tuple[] tups) {
+		try {
+			BranchId bid = getBranchId(tid, tableName, branchName);
+			int count = 0;
+			for (Tuple tup : tups) {
+				count += drainOp(Database.getBufferPool().delete(tid, tableName, bid, tup));
+			}
+			opCount = count;
+		} catch (DbException | TransactionAbortedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * simpledb only inserts through per-tuple operators, so this streams the
+	 * tuples into them, with no commit in between.
+	 */
+	@Override
+	public void insertAll(TransactionId tid, String tableName, String branchName, TupleSrc tuples) {
+		try {
+			BranchId bid = getBranchId(tid, tableName, branchName);
+			int count = 0;
+			while (tuples.hasNext()) {
+				count += drainOp(Database.getBufferPool().insert(tid, tableName, bid, tuples.next()));
+			}
+			opCount = count;
+		} catch (DbException | TransactionAbortedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	@Override
 	public void QUERY_3(TransactionId tid, String tableName, String branchName1, String branchName2, Predicate pred) {
 		try {
 			BranchId bid1 = getBranchId(tid, tableName, branchName1);
 			BranchId bid2 = getBranchId(tid, tableName, branchName2);
 			DbIterator q3Op = Database.getBufferPool().QUERY_3(tid, tableName, bid1, bid2, pred);
-			exceuteOp(q3Op);
+			consumeOp(q3Op);
 		} catch (DbException | TransactionAbortedException | NoSuchElementException e) {
 			throw new RuntimeException(e);
 		}
@@ -602,7 +976,7 @@ public class SimpleDBWrapper extends VersionDB {
 		try {
 			Predicate pred = new Predicate(fieldno, Op.GREATER_THAN_OR_EQ, new IntField(alpha));
 			DbIterator q4Op = Database.getBufferPool().QUERY_4(tid, tableName, pred);
-			exceuteOp(q4Op);
+			consumeOp(q4Op);
 		} catch (DbException | TransactionAbortedException | NoSuchElementException e) {
 			throw new RuntimeException(e);
 		}
@@ -614,7 +988,7 @@ public class SimpleDBWrapper extends VersionDB {
 			BranchId from = getBranchId(tid, tableName, fromBranchName);
 			BranchId to = getBranchId(tid, tableName, toBranchName);
 			DbIterator diffOp = Database.getBufferPool().diff(tid, tableName, from, to);
-			exceuteOp(diffOp);
+			consumeOp(diffOp);
 		} catch (DbException | TransactionAbortedException | NoSuchElementException e) {
 			throw new RuntimeException(e);
 		}
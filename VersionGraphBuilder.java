@@ -1,6 +1,8 @@
 package simpledb.versioned.benchmark;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Random;
 
 import org.apache.log4j.Logger;
@@ -27,6 +29,7 @@ import simpledb.versioned.benchmark.ycsb.VersionDB.Transaction;
 import simpledb.versioned.benchmark.ycsb.VersionDB.TransactionExecutor;
 import simpledb.versioned.benchmark.ycsb.VersionDB.TupleSrc;
 import simpledb.versioned.benchmark.ycsb.generator.DiscreteGenerator;
+import simpledb.versioned.benchmark.ycsb.generator.DiscreteGenerator.Sampler;
 
 /**
  * Provides at least semantics, will grow the structure to at least the target
@@ -42,6 +45,7 @@ public class VersionGraphBuilder {
 	static final String BRANCH_OP_NAME = "BRANCH";
 	static final String UPDATE_OP_NAME = "UPDATE";
 	static final String NO_UPDATE_OP_NAME = "NO UPDATE";
+	static final String INSERT_ONLY_LOAD_OP_NAME = "insert_only_load";
 	final VersionDB db;
 	final TupleDesc td;
 	final Type primaryKeyType;
@@ -50,21 +54,27 @@ public class VersionGraphBuilder {
 	final TupleSrc tupleSrc;
 	final TransactionId systemTransaction;
 	final String startBranchRoot;
+	BranchIds branchIds;
 	final LoadDistribution distribution;
 	final BranchStrategy branchStrategy;
 	final TupleLoadStrategy tupleLoadStrategy;
 	final DiscreteGenerator treeOperationChooser;
 	final DiscreteGenerator updateOperationChooser;
+	final int branchOpIndex, mergeOpIndex, updateOpIndex;
 	final double branchSpacingFactor;
 	final boolean removeBranchCap;
 	final int numInsertsUpdatesIntoBranchBeforeCommit;
 	final Random insertUpdate, treeMod;
+	final boolean insertOnlyRoot;
+	// reused by every batch, the db does not keep the tuples it is handed
+	Tuple[] batchTuples = new Tuple[0];
+	Tuple[] batchBuf = new Tuple[0];
 
 	public VersionGraphBuilder(VersionDB db, VersionedTableEntry table, TransactionId systemTransaction, TupleDesc td,
 			String startBranchRoot, BranchStrategy branchStrategy, LoadDistribution distribution,
 			TupleLoadStrategy tupleLoadStrategy, TupleSrc tupleSrc, double initialBranchProportion,
 			double initialMergeProportion, double initialUpdateProbability, double branchSpacingFactor,
-			boolean removeBranchCap, int numInsertsUpdatesIntoBranchBeforeCommit) {
+			boolean removeBranchCap, int numInsertsUpdatesIntoBranchBeforeCommit, boolean insertOnlyRoot, Sampler sampler) {
 
 		try {
 			insertUpdate = new Random(
@@ -89,13 +99,14 @@ public class VersionGraphBuilder {
 		this.branchSpacingFactor = branchSpacingFactor;
 		this.removeBranchCap = removeBranchCap;
 		this.numInsertsUpdatesIntoBranchBeforeCommit = numInsertsUpdatesIntoBranchBeforeCommit;
+		this.insertOnlyRoot = insertOnlyRoot;
 
-		treeOperationChooser = new DiscreteGenerator(treeMod);
-		treeOperationChooser.addValue(initialBranchProportion, BRANCH_OP_NAME);
-		treeOperationChooser.addValue(initialMergeProportion, MERGE_OP_NAME);
+		treeOperationChooser = new DiscreteGenerator(treeMod, sampler);
+		branchOpIndex = treeOperationChooser.addValue(initialBranchProportion, BRANCH_OP_NAME);
+		mergeOpIndex = treeOperationChooser.addValue(initialMergeProportion, MERGE_OP_NAME);
 
-		updateOperationChooser = new DiscreteGenerator(insertUpdate);
-		updateOperationChooser.addValue(initialUpdateProbability, UPDATE_OP_NAME);
+		updateOperationChooser = new DiscreteGenerator(insertUpdate, sampler);
+		updateOpIndex = updateOperationChooser.addValue(initialUpdateProbability, UPDATE_OP_NAME);
 		updateOperationChooser.addValue(1 - initialUpdateProbability, NO_UPDATE_OP_NAME);
 	}
 
@@ -112,10 +123,16 @@ public class VersionGraphBuilder {
 		// initialization
 		int numTreeOpsRemaining = distribution.getTotalInitialNumNewBranches();
 
-		distribution.addBranch(startBranchRoot);
 		branchStrategy.init(startBranchRoot);
-		tupleLoadStrategy.addBranch(startBranchRoot);
-		doTargetBranchLoad(systemTransaction, startBranchRoot);
+		branchIds = branchStrategy.getBranchIds();
+		int root = branchIds.getId(startBranchRoot);
+		distribution.addBranch(root, startBranchRoot);
+		tupleLoadStrategy.addBranch(root);
+		if (insertOnlyRoot) {
+			doInsertOnlyLoad(systemTransaction, root);
+		} else {
+			doTargetBranchLoad(systemTransaction, root);
+		}
 		logger.debug("initialized and loaded root branch: " + startBranchRoot);
 
 		// generate the remaining ops
@@ -125,10 +142,10 @@ public class VersionGraphBuilder {
 			// there may be a string of these
 			TreeModOpData currentOp = branchStrategy.getNextForInit();
 			if (currentOp == null) {
-				String nextOp = treeOperationChooser.nextString();
-				if (nextOp.equals(BRANCH_OP_NAME)) {
+				int nextOp = treeOperationChooser.nextIndex();
+				if (nextOp == branchOpIndex) {
 					currentOp = branchStrategy.getNextForBranch();
-				} else if (nextOp.equals(MERGE_OP_NAME)) {
+				} else if (nextOp == mergeOpIndex) {
 					currentOp = branchStrategy.getNextForMerge();
 				} else {
 					throw new IllegalStateException();
@@ -164,13 +181,13 @@ public class VersionGraphBuilder {
 
 			// update tuple load strategy so that it knows about the new
 			// branch
-			distribution.addBranch(branchOp.child);
-			tupleLoadStrategy.addBranch(branchOp.child, branchOp.parent);
+			distribution.addBranch(branchOp.childId, branchOp.child);
+			tupleLoadStrategy.addBranch(branchOp.childId, branchOp.parentId);
 
 			doBranch(tid, branchOp);
 
 			// Only load following a genuine branch versus a merge
-			doTargetBranchLoad(tid, branchOp.child);
+			doTargetBranchLoad(tid, branchOp.childId);
 		} else if (treeMod instanceof MergeOpData) {
 			MergeOpData mergeOp = (MergeOpData) treeMod;
 
@@ -182,39 +199,33 @@ public class VersionGraphBuilder {
 		}
 	}
 
-	private void doInsert(TransactionId tid, String branchName) {
-		IntList primaryKeyToInsert = tupleLoadStrategy.getNextForInsert(branchName);
-		int numInserted = 0;
-		for (IntField primaryKey : primaryKeyToInsert) {
-			Tuple currentTuple = tupleSrc.next();
-			currentTuple.setField(primaryKeyIndex, primaryKey);
-
-			db.insert(tid, table.tableName, branchName, currentTuple);
-			numInserted++;
-
-			if (logger.isDebugEnabled()) {
+	private void doInsert(TransactionId tid, int branchId) {
+		String branchName = branchIds.getName(branchId);
+		IntList primaryKeyToInsert = tupleLoadStrategy.getNextForInsert(branchId);
+		Tuple[] batch = nextBatch(primaryKeyToInsert);
+		db.insertBatch(tid, table.tableName, branchName, batch);
+		int numInserted = batch.length;
+		if (logger.isDebugEnabled()) {
+			for (IntField primaryKey : primaryKeyToInsert) {
 				logger.debug("Inserted " + primaryKey + " into " + branchName);
 			}
 		}
 		if (numInserted > 1) {
 			logger.debug("Total inserted " + numInserted + " into " + branchName);
 		}
-		distribution.updateNumInsertedUpdated(branchName, numInserted);
+		distribution.updateNumInsertedUpdated(branchId, numInserted);
 	}
 
-	private void doUpdate(TransactionId tid, String branchName) {
-		IntList primaryKeyToUpdate = tupleLoadStrategy.getNextForUpdate(branchName);
-		int numUpdated = 0;
-		for (IntField primaryKey : primaryKeyToUpdate) {
-			// get a new tuple, but change the primary key so it looks like a
-			// tuple just being updated
-			Tuple currentTuple = tupleSrc.next();
-			currentTuple.setField(primaryKeyIndex, primaryKey);
-
-			db.update(tid, table.tableName, branchName, currentTuple);
-			numUpdated++;
-
-			if (logger.isDebugEnabled()) {
+	private void doUpdate(TransactionId tid, int branchId) {
+		String branchName = branchIds.getName(branchId);
+		IntList primaryKeyToUpdate = tupleLoadStrategy.getNextForUpdate(branchId);
+		// get new tuples, but change the primary keys so they look like
+		// tuples just being updated
+		Tuple[] batch = nextBatch(primaryKeyToUpdate);
+		db.updateBatch(tid, table.tableName, branchName, batch);
+		int numUpdated = batch.length;
+		if (logger.isDebugEnabled()) {
+			for (IntField primaryKey : primaryKeyToUpdate) {
 				logger.debug("Updated " + primaryKey + " into " + branchName);
 			}
 		}
@@ -223,18 +234,147 @@ public class VersionGraphBuilder {
 		}
 
 		// Count updates toward insert count to constraint global data set size
-		distribution.updateNumInsertedUpdated(branchName, numUpdated);
+		distribution.updateNumInsertedUpdated(branchId, numUpdated);
+	}
+
+	/**
+	 * Take the next tuples from the tuple source, one per primary key, and set
+	 * their primary keys so they can be handed to the db as one batch. The
+	 * batch and its tuples are reused by the next call, once the db has
+	 * applied it.
+	 */
+	private Tuple[] nextBatch(IntList primaryKeys) {
+		int size = primaryKeys.size();
+		if (batchBuf.length != size) {
+			if (size > batchTuples.length) {
+				int old = batchTuples.length;
+				batchTuples = Arrays.copyOf(batchTuples, Math.max(size, 2 * old));
+				for (int i = old; i < batchTuples.length; i++) {
+					batchTuples[i] = new Tuple(td);
+				}
+			}
+			batchBuf = Arrays.copyOf(batchTuples, size);
+		}
+		if (tupleSrc.nextBatch(batchBuf) < batchBuf.length) {
+			throw new IllegalStateException("Tuple source ran out");
+		}
+		for (int i = 0; i < batchBuf.length; i++) {
+			TupleSrc.setInt(batchBuf[i], primaryKeyIndex, primaryKeys.get(i));
+		}
+		return batchBuf;
+	}
+
+	/**
+	 * Give a new branch its initial tuples with one insertAll, inserts only,
+	 * and one commit.
+	 */
+	private void doInsertOnlyLoad(TransactionId tid, int branchId) {
+		String branchName = branchIds.getName(branchId);
+		int numToInsert = (int) Math.ceil(branchSpacingFactor * distribution.getRemainingToInsert(branchId));
+		InsertOnlyTupleSrc tuples = new InsertOnlyTupleSrc(branchId, numToInsert);
+		TransactionExecutor te = new TransactionExecutor(db, table, INSERT_ONLY_LOAD_OP_NAME);
+		Transaction t = new Transaction(branchName) {
+
+			@Override
+			public void execute(VersionDB db, String tableName) {
+				db.insertAll(tid, tableName, branchName, tuples);
+			}
+		};
+		te.setTransaction(t);
+		te.doTransaction();
+		logger.debug("Inserted " + tuples.numLoaded + " into " + branchName);
+
+		distribution.updateNumInsertedUpdated(branchId, tuples.numLoaded);
+		doCommit(tid, branchId);
+		distribution.resetNumTuplesInsertedUpdatedSinceLastCommit(branchId);
+	}
+
+	/**
+	 * The tuples of an insert-only load: tuples of the tuple source with the next
+	 * primary keys the tuple load strategy hands out for the branch. Keys are
+	 * drawn a batch at a time, so every key drawn is loaded even if that goes
+	 * past the requested number.
+	 */
+	class InsertOnlyTupleSrc implements TupleSrc {
+		final int branchId;
+		int remaining;
+		IntList keys;
+		int nextKey;
+		int numLoaded;
+		final Tuple tup;
+
+		InsertOnlyTupleSrc(int branchId, int numToInsert) {
+			this.branchId = branchId;
+			remaining = numToInsert;
+			tup = new Tuple(td);
+		}
+
+		@Override
+		public void open(TransactionId tid) {
+			// do nothing on purpose
+		}
+
+		/**
+		 * Not supported: the keys and tuples handed out are taken from the
+		 * tuple load strategy and the tuple source for good.
+		 */
+		@Override
+		public void rewind() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void close() {
+			// do nothing on purpose
+		}
+
+		@Override
+		public boolean hasNext() {
+			return remaining > 0 || (keys != null && nextKey < keys.size());
+		}
+
+		/**
+		 * The same tuple every time, with its fields changed in place.
+		 */
+		@Override
+		public Tuple next() {
+			if (!nextInto(tup)) {
+				throw new NoSuchElementException();
+			}
+			return tup;
+		}
+
+		@Override
+		public boolean nextInto(Tuple tup) {
+			if (!hasNext()) {
+				return false;
+			}
+			if (keys == null || nextKey == keys.size()) {
+				keys = tupleLoadStrategy.getNextForInsert(branchId);
+				nextKey = 0;
+				if (keys.size() == 0) {
+					throw new IllegalStateException("No keys to insert into: " + branchIds.getName(branchId));
+				}
+			}
+			if (!tupleSrc.nextInto(tup)) {
+				throw new IllegalStateException("Tuple source ran out");
+			}
+			TupleSrc.setInt(tup, primaryKeyIndex, keys.get(nextKey++));
+			remaining--;
+			numLoaded++;
+			return true;
+		}
 	}
 
-	private void doTargetBranchLoad(TransactionId tid, String targetBranchName) {
-		logger.debug("doing target for: " + targetBranchName);
-		int minNumToInsert = (int) Math.ceil(branchSpacingFactor * distribution.getRemainingToInsert(targetBranchName));
+	private void doTargetBranchLoad(TransactionId tid, int targetBranchId) {
+		logger.debug("doing target for: " + branchIds.getName(targetBranchId));
+		int minNumToInsert = (int) Math.ceil(branchSpacingFactor * distribution.getRemainingToInsert(targetBranchId));
 		// upon first inserting into a branch, ensure it reaches its
 		// initial capacity
-		int numInsertedSoFar = distribution.getNumInsertedUpdated(targetBranchName);
+		int numInsertedSoFar = distribution.getNumInsertedUpdated(targetBranchId);
 		while (numInsertedSoFar < minNumToInsert) {
 			doInsertUpdateCycle(tid);
-			numInsertedSoFar = distribution.getNumInsertedUpdated(targetBranchName);
+			numInsertedSoFar = distribution.getNumInsertedUpdated(targetBranchId);
 		}
 	}
 
@@ -245,9 +385,8 @@ public class VersionGraphBuilder {
 	}
 
 	private void doInsertUpdateCycle(TransactionId tid) {
-		String nextUpdate = updateOperationChooser.nextString();
-		String branchInsertedUpdated = null;
-		if (nextUpdate.equals(UPDATE_OP_NAME)) {
+		int branchInsertedUpdated;
+		if (updateOperationChooser.nextIndex() == updateOpIndex) {
 			branchInsertedUpdated = performUpdateCycle(tid);
 		} else {
 			branchInsertedUpdated = performInsertCycle(tid);
@@ -257,7 +396,7 @@ public class VersionGraphBuilder {
 		// to add this logic in doUpdate and doInsert
 		if (shouldCommit(branchInsertedUpdated)) {
 			if (logger.isDebugEnabled()) {
-				logger.debug("Commiting: " + branchInsertedUpdated + " at num inserted/updated: "
+				logger.debug("Commiting: " + branchIds.getName(branchInsertedUpdated) + " at num inserted/updated: "
 						+ distribution.getNumInsertedUpdated(branchInsertedUpdated));
 			}
 			doCommit(tid, branchInsertedUpdated);
@@ -265,14 +404,14 @@ public class VersionGraphBuilder {
 		}
 	}
 
-	private boolean shouldCommit(String branchName) {
+	private boolean shouldCommit(int branchId) {
 		return distribution
-				.getNumTuplesInsertedUpdatedSinceLastCommit(branchName) >= numInsertsUpdatesIntoBranchBeforeCommit;
+				.getNumTuplesInsertedUpdatedSinceLastCommit(branchId) >= numInsertsUpdatesIntoBranchBeforeCommit;
 	}
 
-	private String performUpdateCycle(TransactionId tid) {
+	private int performUpdateCycle(TransactionId tid) {
 		UpdateOpData updateOpData = branchStrategy.getNextForUpdate();
-		String nextBranchToUpdate = updateOpData.branch;
+		int nextBranchToUpdate = updateOpData.branchId;
 
 		if (!removeBranchCap) {
 			// need breaking counter in case branching strategy keeps returning
@@ -281,7 +420,7 @@ public class VersionGraphBuilder {
 			while (distribution.getRemainingToInsert(nextBranchToUpdate) <= 0
 					&& count < 2 * distribution.getTotalInitialNumBranches()) {
 				updateOpData = branchStrategy.getNextForUpdate();
-				nextBranchToUpdate = updateOpData.branch;
+				nextBranchToUpdate = updateOpData.branchId;
 				count++;
 			}
 		}
@@ -296,9 +435,9 @@ public class VersionGraphBuilder {
 		}
 	}
 
-	private String performInsertCycle(TransactionId tid) {
+	private int performInsertCycle(TransactionId tid) {
 		InsertOpData insertOpData = branchStrategy.getNextForInsert();
-		String nextBranchToInsertInto = insertOpData.branch;
+		int nextBranchToInsertInto = insertOpData.branchId;
 		if (!removeBranchCap) {
 			// need breaking counter in case branching strategy keeps returning
 			// the same branch in an infinite loop (e.g. deep at the end)
@@ -306,7 +445,7 @@ public class VersionGraphBuilder {
 			while (distribution.getRemainingToInsert(nextBranchToInsertInto) <= 0
 					&& count < 2 * distribution.getTotalInitialNumBranches()) {
 				insertOpData = branchStrategy.getNextForInsert();
-				nextBranchToInsertInto = insertOpData.branch;
+				nextBranchToInsertInto = insertOpData.branchId;
 				count++;
 			}
 		}
@@ -314,7 +453,8 @@ public class VersionGraphBuilder {
 		return nextBranchToInsertInto;
 	}
 
-	private void doCommit(TransactionId tid, String branchName) {
+	private void doCommit(TransactionId tid, int branchId) {
+		String branchName = branchIds.getName(branchId);
 		TransactionExecutor te = new TransactionExecutor(db, table, CoreVersionWorkload.NUM_COMMITS_PROPERTY);
 		Transaction t = new Transaction(branchName) {
 
@@ -1,14 +1,22 @@
 package simpledb.versioned.benchmark;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Date;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.Random;
 
 import org.apache.log4j.Logger;
 
+import com.google.common.collect.ImmutableList;
+
 import simpledb.BufferPool;
+import simpledb.Constants;
+import simpledb.Database;
 import simpledb.DbException;
+import simpledb.IntField;
 import simpledb.TransactionAbortedException;
 import simpledb.TransactionId;
 import simpledb.Tuple;
@@ -21,6 +29,7 @@ import simpledb.versioned.benchmark.branchstrategy.ScientificBranchStrategy;
 import simpledb.versioned.benchmark.loaddistribution.LoadDistribution;
 import simpledb.versioned.benchmark.loaddistribution.SkewedLoadDistribution;
 import simpledb.versioned.benchmark.loaddistribution.UniformLoadDistribution;
+import simpledb.versioned.benchmark.tupleloadstrategy.AbstractTupleLoadStrategy;
 import simpledb.versioned.benchmark.tupleloadstrategy.ClusteredTupleLoadStrategy;
 import simpledb.versioned.benchmark.tupleloadstrategy.SingleTupleLoadStrategy;
 import simpledb.versioned.benchmark.tupleloadstrategy.TupleLoadStrategy;
@@ -29,6 +38,7 @@ import simpledb.versioned.benchmark.ycsb.Scenario;
 import simpledb.versioned.benchmark.ycsb.VersionDB;
 import simpledb.versioned.benchmark.ycsb.VersionDB.MergeProc;
 import simpledb.versioned.benchmark.ycsb.VersionDB.TupleSrc;
+import simpledb.versioned.benchmark.ycsb.generator.DiscreteGenerator.Sampler;
 
 public class VersionedScenario extends Scenario {
 	static final Logger logger = Logger.getLogger(VersionedScenario.class);
@@ -56,6 +66,15 @@ public class VersionedScenario extends Scenario {
 
 	static final String TUPLE_SRC_FILE_NAME_PROPERTY = "tuple_src_file_name";
 
+	/**
+	 * For a mapped tuple file, the first tuple to read and the distance
+	 * between tuples read.
+	 */
+	static final String TUPLE_SRC_OFFSET_PROPERTY = "tuple_src_offset";
+	static final String TUPLE_SRC_OFFSET_DEFAULT = "0";
+	static final String TUPLE_SRC_STRIDE_PROPERTY = "tuple_src_stride";
+	static final String TUPLE_SRC_STRIDE_DEFAULT = "1";
+
 	static final String NUM_VERSIONS_PROPERTY = "load_num_versions";
 	static final String DEFAULT_NUM_VERSIONS = "20";
 
@@ -81,6 +100,22 @@ public class VersionedScenario extends Scenario {
 	static final String BRANCH_SPACING_LD_PROPERTY = "load_branch_spacing";
 	static final String BRANCH_SPACING_LD_DEFAULT = "1";
 
+	/**
+	 * Load the initial tuples of the root branch with plain inserts and a
+	 * single commit, instead of insert/update cycles. The tuples still go
+	 * through the db's per-tuple insert path.
+	 */
+	static final String INSERT_ONLY_ROOT_PROPERTY = "load_root_insert_only";
+	static final String INSERT_ONLY_ROOT_DEFAULT = "false";
+
+	/**
+	 * How the build and the branch strategies draw their weighted choices:
+	 * "cdf" reproduces the runs of earlier versions for the same seed,
+	 * "alias" draws in constant time.
+	 */
+	static final String DISCRETE_SAMPLER_PROPERTY = "discrete_sampler";
+	static final String DISCRETE_SAMPLER_DEFAULT = "cdf";
+
 	static final int NUM_TUPLES_BUFFER = 1000;
 
 	static final String BRANCH_START_ROOT_PROPERTY = "branch_root";
@@ -155,8 +190,37 @@ public class VersionedScenario extends Scenario {
 	static final String BRANCH_DISTRIBUTION_PROPERTY = "rand_branch_dist";
 	static final String BRANCH_DISTRIBUTION_DEFAULT = "uniform";
 
+	/**
+	 * Directory to keep build snapshots in. When set, a run restores the table
+	 * from a snapshot built with the same parameters if there is one, and
+	 * otherwise saves one once the table is prepared for the workload.
+	 */
+	static final String SNAPSHOT_DIR_PROPERTY = "snapshot_dir";
+
+	/**
+	 * Properties that determine the result of the build phase, and so the
+	 * snapshot it can be restored from. The buffer pool size does not change
+	 * the result and is left out.
+	 */
+	static final List<String> SNAPSHOT_KEY_PROPERTIES = ImmutableList.of(TABLE_NAME_PROPERTY, TABLE_TYPE_PROPERTY,
+			MERGE_PROC_PROPERTY, NUM_COLUMNS_PROPERTY, TUPLE_SRC_PROPERTY, TUPLE_SRC_FILE_NAME_PROPERTY,
+			TUPLE_SRC_OFFSET_PROPERTY, TUPLE_SRC_STRIDE_PROPERTY,
+			NUM_VERSIONS_PROPERTY, NUM_TUPLES_LD_PROPERTY, NUM_INSERTS_UPDATES_IN_BRANCH_BEFORE_COMMIT_PROPERTY,
+			BRANCH_PROPORTION_PROPERTY, MERGE_PROPORTION_PROPERTY, UPDATE_PROBABILITY_PROPERTY,
+			BRANCH_SPACING_LD_PROPERTY, INSERT_ONLY_ROOT_PROPERTY, DISCRETE_SAMPLER_PROPERTY,
+			BRANCH_START_ROOT_PROPERTY, PAGE_SIZE_PROPERTY,
+			BRANCHING_STRATEGY_PROPERTY,
+			LOAD_DISTRIBUTION_PROPERTY, LOAD_SKEW_PROPERTY, REMOVE_BRANCH_CAP_PROPERTY, TUPLE_LOAD_STRATEGY_PROPERTY,
+			FRACTION_OF_PAGE_TO_CLUSTER_PROPERTY, EXTEND_MAINLINE_PROB_PROPERTY, EXTEND_ACTIVE_PROB_PROPERTY,
+			CREATE_ACTIVE_FROM_MAIN_PROB_PROPERTY, CREATE_ACTIVE_FROM_ACTIVE_PROB_PROPERTY, END_ACTIVE_PROB_PROPERTY,
+			MERGE_DEV_PROB_PROPERTY, MERGE_FEATURE_PROB_PROPERTY, MERGE_HOTFIX_PROB_PROPERTY,
+			START_FEATURE_PROB_PROPERTY, START_HOTFIX_PROB_PROPERTY, BRANCH_DISTRIBUTION_PROPERTY,
+			AbstractTupleLoadStrategy.KEY_REQUEST_DISTRIBUTION_PROPERTY,
+			AbstractTupleLoadStrategy.KEY_HOTSPOT_DATA_FRACTION, AbstractTupleLoadStrategy.KEY_HOTSPOT_OPN_FRACTION);
+
 	public static enum TupleSrcType {
-		SINGLE("single"), MULTIPLE_GEN("mult_gen"), MULTIPlE_FILE("mult_file");
+		SINGLE("single"), MULTIPLE_GEN("mult_gen"), MULTIPlE_FILE("mult_file"), STREAM_GEN("stream_gen"),
+		MAPPED_FILE("mapped_file");
 		private final String name;
 
 		TupleSrcType(String name) {
@@ -246,6 +310,71 @@ public class VersionedScenario extends Scenario {
 			tup.setRecordId(null);
 			return tup;
 		}
+
+		@Override
+		public boolean nextInto(Tuple out) {
+			TupleSrc.copyInto(tup, out);
+			return true;
+		}
+	}
+
+	/**
+	 * Random tuples generated as they are pulled, rather than written to a
+	 * heap file first and read back.
+	 */
+	public static class GeneratedTupleSrc implements TupleSrc {
+
+		final TupleDesc td;
+		final long seed;
+		Random rand;
+
+		public GeneratedTupleSrc(TupleDesc td) {
+			this.td = td;
+			try {
+				seed = Long.parseLong(System.getProperty(Constants.RNG_SEED));
+			} catch (Exception ex) {
+				throw new RuntimeException();
+			}
+			rand = new Random(seed);
+		}
+
+		@Override
+		public void open(TransactionId tid) throws DbException, TransactionAbortedException {
+			// do nothing on purpose
+		}
+
+		@Override
+		public void rewind() {
+			rand = new Random(seed);
+		}
+
+		@Override
+		public void close() {
+			// do nothing on purpose
+		}
+
+		@Override
+		public boolean hasNext() {
+			return true;
+		}
+
+		@Override
+		public Tuple next() {
+			Tuple tup = new Tuple(td);
+			for (int i = 0; i < td.numFields(); i++) {
+				tup.setField(i, new IntField(rand.nextInt()));
+			}
+			return tup;
+		}
+
+		@Override
+		public boolean nextInto(Tuple tup) {
+			for (int i = 0; i < td.numFields(); i++) {
+				TupleSrc.setInt(tup, i, rand.nextInt());
+			}
+			tup.setRecordId(null);
+			return true;
+		}
 	}
 
 	private TupleDesc td;
@@ -255,6 +384,8 @@ public class VersionedScenario extends Scenario {
 	private BranchStrategy branchStrategy;
 	private TupleLoadStrategy tupleLoadStrategy;
 	private LoadDistribution loadDistribution;
+	private BuildSnapshot snapshot;
+	private boolean restored;
 
 	/**
 	 * Initialize any state for this DB. Called once per DB instance; there is
@@ -320,6 +451,9 @@ public class VersionedScenario extends Scenario {
 		VersionGraphStructure graphStructure = getVersionGraphStructure(
 				(String) props.getOrDefault(BRANCHING_STRATEGY_PROPERTY, BRANCHING_STRATEGY_DEFAULT));
 
+		Sampler sampler = Sampler
+				.fromName((String) props.getOrDefault(DISCRETE_SAMPLER_PROPERTY, DISCRETE_SAMPLER_DEFAULT));
+
 		switch (graphStructure) {
 		case DEEP:
 			branchStrategy = new DeepBranchStrategy();
@@ -339,7 +473,7 @@ public class VersionedScenario extends Scenario {
 			double startHotFixProb = Double
 					.parseDouble((String) props.getOrDefault(START_HOTFIX_PROB_PROPERTY, START_HOTFIX_PROB_DEFAULT));
 			branchStrategy = new DevBranchStrategy(mergeDevProb, mergeFeatureProb, mergeHotFixProb, startFeatureProb,
-					startHotFixProb);
+					startHotFixProb, sampler);
 			break;
 		case SCIENTIFIC:
 			// TODO: tie these to an input stream
@@ -354,7 +488,7 @@ public class VersionedScenario extends Scenario {
 			double probabilityEndActive = Double
 					.parseDouble((String) props.getOrDefault(END_ACTIVE_PROB_PROPERTY, END_ACTIVE_PROB_DEFAULT));
 			branchStrategy = new ScientificBranchStrategy(probabilityExtendMainline, probabilityExtendActive,
-					probabilityCreateActiveFromActive, probabilityCreateActiveFromMainline, probabilityEndActive);
+					probabilityCreateActiveFromActive, probabilityCreateActiveFromMainline, probabilityEndActive, sampler);
 			break;
 		default:
 			throw new IllegalStateException();
@@ -375,6 +509,17 @@ public class VersionedScenario extends Scenario {
 
 		logger.info("Selected Tuple Load Strategy: " + tupleLoadStrategyType);
 
+		String snapshotDir = props.getProperty(SNAPSHOT_DIR_PROPERTY);
+		if (snapshotDir != null) {
+			snapshot = new BuildSnapshot(new File(snapshotDir), BuildSnapshot.makeKey(props, SNAPSHOT_KEY_PROPERTIES));
+			logger.info("Build snapshot: " + snapshot.getDir());
+			if (snapshot.exists()) {
+				restore(mergeProc, numPages, pageSize);
+				logger.info("Setup took (ms): " + (new Date().getTime() - startTime));
+				return;
+			}
+		}
+
 		// get BUILD PHASE construction arguments
 		int numTuplesLoad = Integer
 				.parseInt((String) props.getOrDefault(NUM_TUPLES_LD_PROPERTY, NUM_TUPLES_LD_DEFAULT));
@@ -398,6 +543,12 @@ public class VersionedScenario extends Scenario {
 			String tupleSrcFileName = props.getProperty(TUPLE_SRC_FILE_NAME_PROPERTY);
 			tupleSrc = db.getTupleSrcFromFile(tupleSrcFileName, td);
 			break;
+		case STREAM_GEN:
+			tupleSrc = new GeneratedTupleSrc(td);
+			break;
+		case MAPPED_FILE:
+			tupleSrc = getMappedTupleSrc(props, numTuplesLoad + NUM_TUPLES_BUFFER);
+			break;
 		}
 
 		logger.info("Generated Tuple Src: " + tupleSrcType);
@@ -440,6 +591,9 @@ public class VersionedScenario extends Scenario {
 		logger.info("Num inserts/updates into branch before commit in that branch: "
 				+ numInsertsUpdatesIntoBranchBeforeCommit);
 
+		boolean insertOnlyRoot = Boolean
+				.parseBoolean((String) props.getOrDefault(INSERT_ONLY_ROOT_PROPERTY, INSERT_ONLY_ROOT_DEFAULT));
+
 		// COMMENCE BUILD PHASE
 		logger.info("Commencing Build Phase!");
 
@@ -463,7 +617,7 @@ public class VersionedScenario extends Scenario {
 		VersionGraphBuilder builder = new VersionGraphBuilder(db, tableEntry, tidT, td, startBranchRoot, branchStrategy,
 				loadDistribution, tupleLoadStrategy, tupleSrc, initialBranchProportion, initialMergeProportion,
 				initialUpdateProbability, branchSpacingFactor, removeBranchCap,
-				numInsertsUpdatesIntoBranchBeforeCommit);
+				numInsertsUpdatesIntoBranchBeforeCommit, insertOnlyRoot, sampler);
 		builder.build();
 
 		// finish setup, commit
@@ -480,6 +634,38 @@ public class VersionedScenario extends Scenario {
 		logger.info("Setup took (ms): " + (endTime - startTime));
 	}
 
+	private void restore(MergeProc mergeProc, int numPages, int pageSize) throws IOException {
+		logger.info("Restoring table from snapshot, skipping Build Phase!");
+
+		db.setPageSize(pageSize);
+		db.setNumBufferPoolPages(numPages);
+
+		TransactionId tidT = db.startTransaction();
+		db.restoreSnapshot(tidT, tableEntry.tableName, td, tableEntry.tableType, mergeProc, snapshot.getDir());
+		db.commitTransaction(tidT);
+
+		branchStrategy = snapshot.readBranchStrategy();
+		tupleLoadStrategy = snapshot.readTupleLoadStrategy();
+		restored = true;
+	}
+
+	/**
+	 * Save the freshly built table and the strategy state it was built with,
+	 * unless it was restored from a snapshot to begin with.
+	 */
+	@Override
+	public void snapshot() throws IOException {
+		if (snapshot == null || restored) {
+			return;
+		}
+		logger.info("Saving build snapshot: " + snapshot.getDir());
+		snapshot.reset();
+		db.saveSnapshot(tableEntry.tableName, snapshot.getDir());
+		snapshot.writeBranchStrategy(branchStrategy);
+		snapshot.writeTupleLoadStrategy(tupleLoadStrategy);
+		snapshot.markComplete();
+	}
+
 	private LoadDistributionType getLoadDistributionType(String loadDistributionName) {
 		for (LoadDistributionType blp : LoadDistributionType.values()) {
 			if (blp.getName().equals(loadDistributionName)) {
@@ -507,6 +693,26 @@ public class VersionedScenario extends Scenario {
 		throw new IllegalArgumentException("Invalid merge proc!");
 	}
 
+	/**
+	 * Read tuples from a mapped tuple file, writing it from generated tuples
+	 * first if it does not exist yet.
+	 */
+	private TupleSrc getMappedTupleSrc(Properties props, int numTuplesNeeded) throws IOException {
+		String tupleSrcFileName = props.getProperty(TUPLE_SRC_FILE_NAME_PROPERTY);
+		if (tupleSrcFileName == null) {
+			throw new IllegalArgumentException("No tuple file given in: " + TUPLE_SRC_FILE_NAME_PROPERTY);
+		}
+		long offset = Long.parseLong(props.getProperty(TUPLE_SRC_OFFSET_PROPERTY, TUPLE_SRC_OFFSET_DEFAULT));
+		long stride = Long.parseLong(props.getProperty(TUPLE_SRC_STRIDE_PROPERTY, TUPLE_SRC_STRIDE_DEFAULT));
+		File tupleSrcFile = new File(Database.getBaseDir(), tupleSrcFileName);
+		if (!tupleSrcFile.exists()) {
+			long numTuples = offset + numTuplesNeeded * stride;
+			logger.info("Writing " + numTuples + " tuples to: " + tupleSrcFile);
+			MappedTupleFile.write(tupleSrcFile, td, new GeneratedTupleSrc(td), numTuples);
+		}
+		return new MappedTupleFile.MappedTupleSrc(tupleSrcFile, td, offset, stride);
+	}
+
 	private TupleSrcType getTupleSrcType(String tupleSrcTypeName) {
 		for (TupleSrcType tst : TupleSrcType.values()) {
 			if (tst.getName().equals(tupleSrcTypeName)) {
@@ -1,17 +1,30 @@
 package simpledb.versioned.benchmark.branchstrategy;
 
+import java.io.Serializable;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
-
-//not thread safe
-public abstract class BranchStrategy {
+import java.util.concurrent.ConcurrentHashMap;
+
+import simpledb.versioned.benchmark.BranchIds;
+
+/**
+ * Shapes the version graph and picks the branches of each operation. Calls
+ * that change the graph (init, getNextForInit, getNextForBranch and
+ * getNextForMerge) must hold the workload's tree write lock; all other calls
+ * hold its read lock and may run on several client threads at once, so they
+ * only read the graph.
+ */
+public abstract class BranchStrategy implements Serializable {
 	static final String EDGE_SYMBOL = "->";
 	static final int MAX_NUM_BRANCHES_TO_MERGE = 2;
 	static final String BRANCH_NAME_BASE = "branch";
 	static final int MAX_BRANCH_NAME_LENGTH = BRANCH_NAME_BASE.length() + 5;
 	static final String NO_SUB_OPERATION_NAME = "NONE";
+	static final int INITIAL_NUM_BRANCHES = 16;
 
-	public static class OpData {
+	public static class OpData implements Serializable {
 		public String subOperationName;
 
 		public OpData() {
@@ -24,10 +37,12 @@ public abstract class BranchStrategy {
 	}
 
 	public static class BasicOpData extends OpData {
+		public final int branchId;
 		public final String branch;
 
-		public BasicOpData(String branch) {
-			this.branch = branch;
+		public BasicOpData(BranchIds branchIds, int branchId) {
+			this.branchId = branchId;
+			this.branch = branchIds.getName(branchId);
 		}
 
 	}
@@ -39,12 +54,16 @@ public abstract class BranchStrategy {
 	// TODO: add methods to each of these instead of accessing attributes
 	// directly
 	public static class BranchOpData extends TreeModOpData {
+		public final int parentId;
+		public final int childId;
 		public final String parent;
 		public final String child;
 
-		public BranchOpData(String parent, String child) {
-			this.parent = parent;
-			this.child = child;
+		public BranchOpData(BranchIds branchIds, int parentId, int childId) {
+			this.parentId = parentId;
+			this.childId = childId;
+			this.parent = branchIds.getName(parentId);
+			this.child = branchIds.getName(childId);
 		}
 
 		public String getChild() {
@@ -59,10 +78,12 @@ public abstract class BranchStrategy {
 
 	public static class MergeOpData extends TreeModOpData {
 
+		public final int[] parentIds;
 		public final String[] parents;
 
-		public MergeOpData(String[] parents) {
-			this.parents = parents;
+		public MergeOpData(BranchIds branchIds, int[] parentIds) {
+			this.parentIds = parentIds;
+			this.parents = branchIds.getNames(parentIds);
 		}
 
 		@Override
@@ -73,50 +94,54 @@ public abstract class BranchStrategy {
 	}
 
 	public static class ScanOpData extends OpData {
+		public final int branchId;
 		public final String branch;
 
-		public ScanOpData(String branch) {
-			this.branch = branch;
+		public ScanOpData(BranchIds branchIds, int branchId) {
+			this.branchId = branchId;
+			this.branch = branchIds.getName(branchId);
 		}
 
 	}
 
 	public static class DeleteOpData extends BasicOpData {
 
-		public DeleteOpData(String branch) {
-			super(branch);
+		public DeleteOpData(BranchIds branchIds, int branchId) {
+			super(branchIds, branchId);
 		}
 
 	}
 
 	public static class InsertOpData extends BasicOpData {
 
-		public InsertOpData(String branch) {
-			super(branch);
+		public InsertOpData(BranchIds branchIds, int branchId) {
+			super(branchIds, branchId);
 		}
 
 	}
 
 	public static class UpdateOpData extends BasicOpData {
 
-		public UpdateOpData(String branch) {
-			super(branch);
+		public UpdateOpData(BranchIds branchIds, int branchId) {
+			super(branchIds, branchId);
 		}
 
 	}
 
 	public static class ReadOpData extends BasicOpData {
 
-		public ReadOpData(String branch) {
-			super(branch);
+		public ReadOpData(BranchIds branchIds, int branchId) {
+			super(branchIds, branchId);
 		}
 	}
 
 	public static class CompareOpData extends OpData {
+		public final int[] branchIds;
 		public final String[] branches;
 
-		public CompareOpData(String[] branches) {
-			this.branches = branches;
+		public CompareOpData(BranchIds branchIds, int[] ids) {
+			this.branchIds = ids;
+			this.branches = branchIds.getNames(ids);
 		}
 	}
 
@@ -124,71 +149,177 @@ public abstract class BranchStrategy {
 		String[] selectBranches(List<String> branchPool);
 	}
 
+	/**
+	 * Selects numBranchesToScan distinct branches uniformly at random, or the
+	 * whole pool if it is not larger than that.
+	 */
 	public static class UniformBranchSelector implements BranchSelector {
 		private final Random rand;
+		private final int numBranchesToScan;
 
 		public UniformBranchSelector(Random rand) {
+			this(rand, 1);
+		}
+
+		public UniformBranchSelector(Random rand, int numBranchesToScan) {
 			this.rand = rand;
+			this.numBranchesToScan = numBranchesToScan;
 		}
 
 		@Override
 		public String[] selectBranches(List<String> branchPool) {
 			int numBranchesInPool = branchPool.size();
-			// int numBranchesToScan = rand.nextInt(numBranchesInPool + 1);
-			int numBranchesToScan = 1;
-			String[] branches = new String[numBranchesToScan];
-			for (int i = 0; i < numBranchesToScan; i++) {
-				int nextIndex = rand.nextInt(numBranchesInPool);
-				branches[i] = branchPool.get(nextIndex);
+			String[] pool = branchPool.toArray(new String[numBranchesInPool]);
+			int numBranches = Math.min(numBranchesToScan, numBranchesInPool);
+			// partial Fisher-Yates shuffle, the first numBranches are the pick
+			for (int i = 0; i < numBranches; i++) {
+				int nextIndex = i + rand.nextInt(numBranchesInPool - i);
+				String branch = pool[nextIndex];
+				pool[nextIndex] = pool[i];
+				pool[i] = branch;
 			}
-			return branches;
+			return numBranches == numBranchesInPool ? pool : Arrays.copyOf(pool, numBranches);
 		}
 	}
 
-	// TODO: object re-use, should be thread local
-	protected ReadOpData readOp;
-	protected UpdateOpData updateOp;
-	protected InsertOpData insertOp;
-	protected DeleteOpData deleteOp;
-	protected ScanOpData scanOp;
-	protected MergeOpData mergeOp;
-	protected BranchOpData branchOp;
-	protected CompareOpData compareOp;
+	// names of the branches created so far, by the ids the strategies work
+	// with
+	protected BranchIds branchIds;
+
+	/**
+	 * Start a new version graph with the root branch, which gets id 0.
+	 */
+	public void init(String startBranchRoot) {
+		branchIds = new BranchIds();
+		init(branchIds.add(startBranchRoot));
+	}
+
+	protected abstract void init(int rootBranchId);
 
-	public abstract void init(String startBranchRoot);
+	public BranchIds getBranchIds() {
+		return branchIds;
+	}
+
+	/**
+	 * The names of all branches created so far, by id.
+	 */
+	public List<String> getBranchNames() {
+		return branchIds.getNames();
+	}
 
 	public abstract TreeModOpData getNextForInit();
 
 	public ReadOpData getNextForRead() {
-		return new ReadOpData(getNextBranchNameForRead());
+		return new ReadOpData(branchIds, getNextBranchIdForRead());
 	}
 
 	public UpdateOpData getNextForUpdate() {
-		return new UpdateOpData(getNextBranchNameForUpdate());
+		return new UpdateOpData(branchIds, getNextBranchIdForUpdate());
 	}
 
 	public InsertOpData getNextForInsert() {
-		return new InsertOpData(getNextBranchNameForInsert());
+		return new InsertOpData(branchIds, getNextBranchIdForInsert());
 	}
 
 	public DeleteOpData getNextForDelete() {
-		return new DeleteOpData(getNextBranchNameForDelete());
+		return new DeleteOpData(branchIds, getNextBranchIdForDelete());
 	}
 
 	public ScanOpData[] getNextForScan() {
-		String[] branchesToScan = getNextBranchesForScan();
+		int[] branchesToScan = getNextBranchIdsForScan();
 		ScanOpData[] ret = new ScanOpData[branchesToScan.length];
 		for (int i = 0; i < branchesToScan.length; ++i) {
-			String branch = branchesToScan[i];
-			ScanOpData scanOp = new ScanOpData(branch);
-			scanOp.setSubOperationName(getScanSubOperationName(branch));
+			ScanOpData scanOp = new ScanOpData(branchIds, branchesToScan[i]);
+			scanOp.setSubOperationName(getScanSubOperationName(scanOp.branch));
 			ret[i] = scanOp;
 		}
 		return ret;
 	}
 
+	// cached so that scans do not build a new metric name per operation, scans
+	// of several client threads may fill it at once
+	private final Map<String, String> scanSubOperationNames = new ConcurrentHashMap<String, String>();
+
 	protected String getScanSubOperationName(String branch) {
-		return "SCANNED: (" + branch + ")";
+		String name = scanSubOperationNames.get(branch);
+		if (name == null) {
+			name = "SCANNED: (" + branch + ")";
+			scanSubOperationNames.put(branch, name);
+		}
+		return name;
+	}
+
+	private final PairNames diffSubOperationNames = new PairNames(" --> ");
+	private final PairNames query3SubOperationNames = new PairNames(" <--> ");
+
+	/**
+	 * Sub-operation name of a DIFF of the first branch of a compare against
+	 * the second, cached like the scan names.
+	 */
+	public String getDiffSubOperationName(CompareOpData compareOp) {
+		return diffSubOperationNames.get(compareOp);
+	}
+
+	/**
+	 * Sub-operation name of a QUERY_3 join of the two branches of a compare,
+	 * cached like the scan names.
+	 */
+	public String getQuery3SubOperationName(CompareOpData compareOp) {
+		return query3SubOperationNames.get(compareOp);
+	}
+
+	/**
+	 * Names of the form "CASE (from SEPARATOR to)" by case name and the ids of
+	 * the two branches. Lookups read a table that is only ever replaced, never
+	 * changed, so they take no lock; misses copy the row they add to.
+	 */
+	static final class PairNames implements Serializable {
+		final String separator;
+		final Map<String, Table> tables = new ConcurrentHashMap<String, Table>();
+
+		static final class Table implements Serializable {
+			// by from id, then to id
+			volatile String[][] names = new String[0][];
+		}
+
+		PairNames(String separator) {
+			this.separator = separator;
+		}
+
+		String get(CompareOpData compareOp) {
+			int from = compareOp.branchIds[0];
+			int to = compareOp.branchIds[1];
+			Table table = tables.get(compareOp.subOperationName);
+			if (table == null) {
+				table = tables.computeIfAbsent(compareOp.subOperationName, (n) -> new Table());
+			}
+			String[][] names = table.names;
+			if (from < names.length && names[from] != null && to < names[from].length && names[from][to] != null) {
+				return names[from][to];
+			}
+			synchronized (table) {
+				names = table.names;
+				String[] row = from < names.length ? names[from] : null;
+				if (row != null && to < row.length && row[to] != null) {
+					return row[to];
+				}
+				row = row == null ? new String[to + 1] : Arrays.copyOf(row, Math.max(row.length, to + 1));
+				row[to] = compareOp.subOperationName + " (" + compareOp.branches[0] + separator
+						+ compareOp.branches[1] + ")";
+				names = Arrays.copyOf(names, Math.max(names.length, from + 1));
+				names[from] = row;
+				table.names = names;
+				return row[to];
+			}
+		}
+	}
+
+	/**
+	 * The branches of interest in the current version graph, the ones scans
+	 * pick from, e.g. mainline and the latest active branches.
+	 */
+	public String[] getActiveBranches() {
+		return branchIds.getNames(getNextBranchIdsForScan());
 	}
 
 	public abstract CompareOpData[] getNextForCompare();
@@ -197,15 +328,22 @@ public abstract class BranchStrategy {
 
 	public abstract BranchOpData getNextForBranch();
 
-	protected abstract String[] getNextBranchesForScan();
+	protected abstract int[] getNextBranchIdsForScan();
+
+	protected abstract int getNextBranchIdForInsert();
 
-	protected abstract String getNextBranchNameForInsert();
+	protected abstract int getNextBranchIdForUpdate();
 
-	protected abstract String getNextBranchNameForUpdate();
+	protected abstract int getNextBranchIdForDelete();
 
-	protected abstract String getNextBranchNameForDelete();
+	protected abstract int getNextBranchIdForRead();
 
-	protected abstract String getNextBranchNameForRead();
+	/**
+	 * Give a branch the strategy creates its id.
+	 */
+	protected int addBranch(String branchName) {
+		return branchIds.add(branchName);
+	}
 
 	private int numBranches = 1;
 
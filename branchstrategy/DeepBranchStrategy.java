@@ -1,17 +1,16 @@
 package simpledb.versioned.benchmark.branchstrategy;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Random;
 
 import simpledb.Constants;
+import simpledb.versioned.benchmark.IntList;
 
 public class DeepBranchStrategy extends BranchStrategy {
 
     static final String TAIL_HEAD_CASE_NAME = "TAIL_HEAD";
     static final String TAIL_PARENT_CASE_NAME = "TAIL_PARENT";
 
-    List<String> branchesInOrder;
+    IntList branchesInOrder;
     int lastIndex;
     final Random insert, delete, update, read;
 
@@ -27,8 +26,8 @@ public class DeepBranchStrategy extends BranchStrategy {
     }
 
     @Override
-    public void init(String startRootBranch) {
-	branchesInOrder = new ArrayList<String>();
+    protected void init(int startRootBranch) {
+	branchesInOrder = new IntList(INITIAL_NUM_BRANCHES);
 	lastIndex = 0;
 	branchesInOrder.add(startRootBranch);
     }
@@ -42,31 +41,31 @@ public class DeepBranchStrategy extends BranchStrategy {
     }
 
     @Override
-    protected String[] getNextBranchesForScan() {
-	return new String[] { branchesInOrder.get(lastIndex) };
+    protected int[] getNextBranchIdsForScan() {
+	return new int[] { branchesInOrder.get(lastIndex) };
     }
 
     @Override
-    protected String getNextBranchNameForInsert() {
-	return getNextBranchNameForSingleBranchMod(insert);
+    protected int getNextBranchIdForInsert() {
+	return getNextBranchIdForSingleBranchMod(insert);
     }
 
     @Override
-    protected String getNextBranchNameForUpdate() {
-	return getNextBranchNameForSingleBranchMod(update);
+    protected int getNextBranchIdForUpdate() {
+	return getNextBranchIdForSingleBranchMod(update);
     }
 
     @Override
-    protected String getNextBranchNameForDelete() {
-	return getNextBranchNameForSingleBranchMod(delete);
+    protected int getNextBranchIdForDelete() {
+	return getNextBranchIdForSingleBranchMod(delete);
     }
 
     @Override
-    protected String getNextBranchNameForRead() {
-	return getNextBranchNameForSingleBranchMod(read);
+    protected int getNextBranchIdForRead() {
+	return getNextBranchIdForSingleBranchMod(read);
     }
 
-    public String getNextBranchNameForSingleBranchMod(Random rand) {
+    public int getNextBranchIdForSingleBranchMod(Random rand) {
 	return branchesInOrder.get(lastIndex);
     }
 
@@ -77,11 +76,11 @@ public class DeepBranchStrategy extends BranchStrategy {
 
     @Override
     public BranchOpData getNextForBranch() {
-	String parent = branchesInOrder.get(lastIndex);
-	String newBranchName = generateBranchNames(1)[0];
-	branchesInOrder.add(newBranchName);
+	int parent = branchesInOrder.get(lastIndex);
+	int newBranch = addBranch(generateBranchNames(1)[0]);
+	branchesInOrder.add(newBranch);
 	++lastIndex;
-	return new BranchOpData(parent, newBranchName);
+	return new BranchOpData(branchIds, parent, newBranch);
     }
 
     @Override
@@ -90,13 +89,13 @@ public class DeepBranchStrategy extends BranchStrategy {
 	    throw new IllegalStateException();
 	}
 
-	String tail = branchesInOrder.get(lastIndex);
-	String tailParent = branchesInOrder.get(lastIndex - 1);
-	String head = branchesInOrder.get(0);
+	int tail = branchesInOrder.get(lastIndex);
+	int tailParent = branchesInOrder.get(lastIndex - 1);
+	int head = branchesInOrder.get(0);
 
-	CompareOpData tailParentCompare = new CompareOpData(new String[] { tailParent, tail });
+	CompareOpData tailParentCompare = new CompareOpData(branchIds, new int[] { tailParent, tail });
 	tailParentCompare.setSubOperationName(TAIL_PARENT_CASE_NAME);
-	CompareOpData tailHeadCompare = new CompareOpData(new String[] { head, tail });
+	CompareOpData tailHeadCompare = new CompareOpData(branchIds, new int[] { head, tail });
 	tailHeadCompare.setSubOperationName(TAIL_HEAD_CASE_NAME);
 
 	return new CompareOpData[] { tailParentCompare, tailHeadCompare };
@@ -5,7 +5,10 @@ import java.util.List;
 import java.util.Random;
 
 import simpledb.Constants;
+import simpledb.versioned.benchmark.BranchIds;
+import simpledb.versioned.benchmark.IntList;
 import simpledb.versioned.benchmark.ycsb.generator.DiscreteGenerator;
+import simpledb.versioned.benchmark.ycsb.generator.DiscreteGenerator.Sampler;
 
 /**
  * Represents a software development type of graph. The ideas here are as
@@ -34,22 +37,25 @@ public class DevBranchStrategy extends BranchStrategy {
 	static final String MERGE_FEATURE_OP_NAME = "MERGE_FEATURE";
 	static final String MERGE_HOTFIX_OP_NAME = "MERGE_HOTFIX";
 
-	String mainline;
-	String dev;
-	List<String> activeFeatures;
-	List<String> retiredFeatures;
-	List<String> activeHotFixes;
-	List<String> retiredHotFixes;
+	int mainline;
+	int dev;
+	IntList activeFeatures;
+	IntList retiredFeatures;
+	IntList activeHotFixes;
+	IntList retiredHotFixes;
 
-	String originalMainlineName;
-	String originalDevName;
+	int originalMainline;
+	int originalDev;
 
 	final Random insert, delete, update, read, scan, compare, branch, merge;
 	final DiscreteGenerator branchOperationChooser;
 	final DiscreteGenerator mergeOperationChooser;
+	// positions of the operations in their choosers, -1 if never chosen
+	int startHotFixOp = -1, startFeatureOp = -1;
+	int mergeDevOp = -1, mergeFeatureOp = -1, mergeHotFixOp = -1;
 
 	public DevBranchStrategy(double mergeDevProb, double mergeFeatureProb, double mergeHotFixProb,
-			double startFeatureProb, double startHotFixProb) {
+			double startFeatureProb, double startHotFixProb, Sampler sampler) {
 
 		try {
 			insert = new Random(Long.parseLong(System.getProperty(Constants.RNG_SEED)) * Constants.DEVBS_SEED_MUL);
@@ -64,52 +70,52 @@ public class DevBranchStrategy extends BranchStrategy {
 			throw new RuntimeException();
 		}
 
-		branchOperationChooser = new DiscreteGenerator(branch);
+		branchOperationChooser = new DiscreteGenerator(branch, sampler);
 		if (startHotFixProb > 0) {
-			branchOperationChooser.addValue(startHotFixProb, START_HOT_FIX_OP_NAME);
+			startHotFixOp = branchOperationChooser.addValue(startHotFixProb, START_HOT_FIX_OP_NAME);
 		}
 		if (startFeatureProb > 0) {
-			branchOperationChooser.addValue(startFeatureProb, START_FEATURE_OP_NAME);
+			startFeatureOp = branchOperationChooser.addValue(startFeatureProb, START_FEATURE_OP_NAME);
 		}
 
-		mergeOperationChooser = new DiscreteGenerator(merge);
+		mergeOperationChooser = new DiscreteGenerator(merge, sampler);
 		if (mergeDevProb > 0) {
-			mergeOperationChooser.addValue(mergeDevProb, MERGE_DEV_OP_NAME);
+			mergeDevOp = mergeOperationChooser.addValue(mergeDevProb, MERGE_DEV_OP_NAME);
 		}
 		if (mergeFeatureProb > 0) {
-			mergeOperationChooser.addValue(mergeFeatureProb, MERGE_FEATURE_OP_NAME);
+			mergeFeatureOp = mergeOperationChooser.addValue(mergeFeatureProb, MERGE_FEATURE_OP_NAME);
 		}
 		if (mergeHotFixProb > 0) {
-			mergeOperationChooser.addValue(mergeHotFixProb, MERGE_HOTFIX_OP_NAME);
+			mergeHotFixOp = mergeOperationChooser.addValue(mergeHotFixProb, MERGE_HOTFIX_OP_NAME);
 		}
 	}
 
 	@Override
-	public void init(String startBranchRoot) {
+	protected void init(int startBranchRoot) {
 		mainline = startBranchRoot;
-		originalMainlineName = mainline;
-		dev = null;
-		activeFeatures = new ArrayList<String>();
-		retiredFeatures = new ArrayList<String>();
-		activeHotFixes = new ArrayList<String>();
-		retiredHotFixes = new ArrayList<String>();
+		originalMainline = mainline;
+		dev = BranchIds.NO_BRANCH;
+		activeFeatures = new IntList(INITIAL_NUM_BRANCHES);
+		retiredFeatures = new IntList(INITIAL_NUM_BRANCHES);
+		activeHotFixes = new IntList(INITIAL_NUM_BRANCHES);
+		retiredHotFixes = new IntList(INITIAL_NUM_BRANCHES);
 	}
 
 	@Override
 	public TreeModOpData getNextForInit() {
-		if (dev == null) {
+		if (dev == BranchIds.NO_BRANCH) {
 			return getNextForBranch();
 		}
 		return null;
 	}
 
 	@Override
-	protected String[] getNextBranchesForScan() {
-		List<String> retList = new ArrayList<String>();
+	protected int[] getNextBranchIdsForScan() {
+		IntList retList = new IntList(6);
 
 		retList.add(mainline);
 
-		if (dev != null) {
+		if (dev != BranchIds.NO_BRANCH) {
 			retList.add(dev);
 		}
 
@@ -118,7 +124,7 @@ public class DevBranchStrategy extends BranchStrategy {
 		}
 
 		if (activeFeatures.size() > 1) {
-			retList.add(activeFeatures.get(activeFeatures.size() - 1));
+			retList.add(activeFeatures.getLast());
 		}
 
 		if (activeHotFixes.size() > 0) {
@@ -126,91 +132,85 @@ public class DevBranchStrategy extends BranchStrategy {
 		}
 
 		if (activeHotFixes.size() > 1) {
-			retList.add(activeHotFixes.get(activeHotFixes.size() - 1));
+			retList.add(activeHotFixes.getLast());
 		}
 
-		String[] ret = new String[retList.size()];
-		for (int i = 0; i < ret.length; ++i) {
-			ret[i] = retList.get(i);
-		}
-
-		return ret;
+		return retList.toArray();
 	}
 
 	@Override
-	protected String getNextBranchNameForInsert() {
-		return getNextBranchNameForSingleBranchMod(insert);
+	protected int getNextBranchIdForInsert() {
+		return getNextBranchIdForSingleBranchMod(insert);
 	}
 
 	@Override
-	protected String getNextBranchNameForUpdate() {
-		return getNextBranchNameForSingleBranchMod(update);
+	protected int getNextBranchIdForUpdate() {
+		return getNextBranchIdForSingleBranchMod(update);
 	}
 
 	@Override
-	protected String getNextBranchNameForDelete() {
-		return getNextBranchNameForSingleBranchMod(delete);
+	protected int getNextBranchIdForDelete() {
+		return getNextBranchIdForSingleBranchMod(delete);
 	}
 
 	@Override
-	protected String getNextBranchNameForRead() {
-		return getNextBranchNameForSingleBranchMod(read);
+	protected int getNextBranchIdForRead() {
+		return getNextBranchIdForSingleBranchMod(read);
 	}
 
-	public String getNextBranchNameForSingleBranchMod(Random rand) {
-		List<String> branchLineTails = new ArrayList<String>();
+	public int getNextBranchIdForSingleBranchMod(Random rand) {
+		int[] branchLineTails = new int[4];
+		int numBranchLineTails = 0;
 
-		branchLineTails.add(mainline);
+		branchLineTails[numBranchLineTails++] = mainline;
 
-		if (dev != null) {
-			branchLineTails.add(dev);
+		if (dev != BranchIds.NO_BRANCH) {
+			branchLineTails[numBranchLineTails++] = dev;
 		}
 
 		int numActiveFeature = activeFeatures.size();
 		int numActiveHotFix = activeHotFixes.size();
 		if (numActiveFeature > 0) {
 			int activeFeatureIndex = rand.nextInt(numActiveFeature);
-			String selectedFeature = activeFeatures.get(activeFeatureIndex);
-			branchLineTails.add(selectedFeature);
+			branchLineTails[numBranchLineTails++] = activeFeatures.get(activeFeatureIndex);
 		}
 		if (numActiveHotFix > 0) {
 			int activeHotFixIndex = rand.nextInt(numActiveHotFix);
-			String selectedActiveHotFix = activeHotFixes.get(activeHotFixIndex);
-			branchLineTails.add(selectedActiveHotFix);
+			branchLineTails[numBranchLineTails++] = activeHotFixes.get(activeHotFixIndex);
 		}
-		int index = rand.nextInt(branchLineTails.size());
-		return branchLineTails.get(index);
+		int index = rand.nextInt(numBranchLineTails);
+		return branchLineTails[index];
 	}
 
 	@Override
 	public BranchOpData getNextForBranch() {
-		String parent, child;
+		int parent, child;
 
-		if (dev == null) {
-			child = "dev";
+		if (dev == BranchIds.NO_BRANCH) {
+			child = addBranch("dev");
 			parent = mainline;
 			dev = child;
-			originalDevName = dev;
-			return new BranchOpData(parent, child);
+			originalDev = dev;
+			return new BranchOpData(branchIds, parent, child);
 		}
 
-		String nextOp = branchOperationChooser.nextString();
-		if (nextOp.equals(START_FEATURE_OP_NAME)) {
-			if (dev == null) {
+		int nextOp = branchOperationChooser.nextIndex();
+		if (nextOp == startFeatureOp) {
+			if (dev == BranchIds.NO_BRANCH) {
 				throw new IllegalStateException();
 			}
 			parent = dev;
-			child = "feature_" + generateBranchNames(1)[0];
+			child = addBranch("feature_" + generateBranchNames(1)[0]);
 			activeFeatures.add(child);
-			return new BranchOpData(parent, child);
-		} else if (nextOp.equals(START_HOT_FIX_OP_NAME)) {
-			if (mainline == null) {
+			return new BranchOpData(branchIds, parent, child);
+		} else if (nextOp == startHotFixOp) {
+			if (mainline == BranchIds.NO_BRANCH) {
 				throw new IllegalStateException();
 			}
 			parent = mainline;
-			child = "hotfix_" + generateBranchNames(1)[0];
+			child = addBranch("hotfix_" + generateBranchNames(1)[0]);
 			activeHotFixes.add(child);
-			return new BranchOpData(parent, child);
+			return new BranchOpData(branchIds, parent, child);
 		} else {
 			throw new IllegalStateException();
 		}
@@ -220,23 +220,22 @@ public class DevBranchStrategy extends BranchStrategy {
 	public MergeOpData getNextForMerge() {
 
 		// Entry 0 is the branch accepting the merge
-		String[] parents = new String[2];
-		String child = null;
+		int[] parents = new int[2];
 
 		while (true) {
-			String nextOp = mergeOperationChooser.nextString();
-			if (nextOp.equals(MERGE_DEV_OP_NAME)) {
+			int nextOp = mergeOperationChooser.nextIndex();
+			if (nextOp == mergeDevOp) {
 				// Given calls to getNextForInit, there should
 				// always exist a reasonably full dev branch by
 				// the time a merge operation is processed.
-				if (dev == null) {
+				if (dev == BranchIds.NO_BRANCH) {
 					throw new IllegalStateException();
 				}
 				parents[0] = mainline;
 				parents[1] = dev;
-				return new MergeOpData(parents);
-			} else if (nextOp.equals(MERGE_FEATURE_OP_NAME)) {
-				if (dev == null) {
+				return new MergeOpData(branchIds, parents);
+			} else if (nextOp == mergeFeatureOp) {
+				if (dev == BranchIds.NO_BRANCH) {
 					throw new IllegalStateException();
 				} else if (activeFeatures.size() == 0) {
 					// Move to next op. Might cause inf. loop
@@ -245,17 +244,17 @@ public class DevBranchStrategy extends BranchStrategy {
 				}
 
 				int selectedFeatureIndex = merge.nextInt(activeFeatures.size());
-				String selectedFeature = activeFeatures.get(selectedFeatureIndex);
+				int selectedFeature = activeFeatures.get(selectedFeatureIndex);
 
 				parents[0] = dev;
 				parents[1] = selectedFeature;
 
-				activeFeatures.remove(selectedFeatureIndex);
+				activeFeatures.removeInOrder(selectedFeatureIndex);
 				retiredFeatures.add(selectedFeature);
 
-				return new MergeOpData(parents);
-			} else if (nextOp.equals(MERGE_HOTFIX_OP_NAME)) {
-				if (mainline == null) {
+				return new MergeOpData(branchIds, parents);
+			} else if (nextOp == mergeHotFixOp) {
+				if (mainline == BranchIds.NO_BRANCH) {
 					throw new IllegalStateException();
 				} else if (activeHotFixes.size() == 0) {
 					// Move to next op. Might cause inf. loop
@@ -264,15 +263,15 @@ public class DevBranchStrategy extends BranchStrategy {
 				}
 
 				int selectedHotFixIndex = merge.nextInt(activeHotFixes.size());
-				String selectedHotFix = activeHotFixes.get(selectedHotFixIndex);
+				int selectedHotFix = activeHotFixes.get(selectedHotFixIndex);
 
 				parents[0] = mainline;
 				parents[1] = selectedHotFix;
 
-				activeHotFixes.remove(selectedHotFixIndex);
+				activeHotFixes.removeInOrder(selectedHotFixIndex);
 				retiredHotFixes.add(selectedHotFix);
 
-				return new MergeOpData(parents);
+				return new MergeOpData(branchIds, parents);
 			} else {
 				throw new IllegalStateException();
 			}
@@ -281,26 +280,28 @@ public class DevBranchStrategy extends BranchStrategy {
 
 	@Override
 	public CompareOpData[] getNextForCompare() {
-		if (dev == null) {
+		if (dev == BranchIds.NO_BRANCH) {
 			throw new IllegalStateException();
 		}
 
 		List<CompareOpData> retList = new ArrayList<CompareOpData>();
 
-		CompareOpData devMainlineCompareOp = new CompareOpData(new String[] { dev, mainline });
+		CompareOpData devMainlineCompareOp = new CompareOpData(branchIds, new int[] { dev, mainline });
 		devMainlineCompareOp.setSubOperationName(DEV_TAIL_MAIN_TAIL_CASE_NAME);
 		retList.add(devMainlineCompareOp);
 
 		if (activeFeatures.size() > 0) {
-			String oldestActiveFeature = activeFeatures.get(0);
-			CompareOpData devOldestFeatureCompareOp = new CompareOpData(new String[] { dev, oldestActiveFeature });
+			int oldestActiveFeature = activeFeatures.get(0);
+			CompareOpData devOldestFeatureCompareOp = new CompareOpData(branchIds,
+					new int[] { dev, oldestActiveFeature });
 			devOldestFeatureCompareOp.setSubOperationName(DEV_TAIL_OLDEST_FEATURE_TAIL_CASE_NAME);
 			retList.add(devOldestFeatureCompareOp);
 		}
 
 		if (activeFeatures.size() > 1) {
-			String youngestActiveFeature = activeFeatures.get(activeFeatures.size() - 1);
-			CompareOpData devYoungestFeatureCompareOp = new CompareOpData(new String[] { dev, youngestActiveFeature });
+			int youngestActiveFeature = activeFeatures.getLast();
+			CompareOpData devYoungestFeatureCompareOp = new CompareOpData(branchIds,
+					new int[] { dev, youngestActiveFeature });
 			devYoungestFeatureCompareOp.setSubOperationName(DEV_TAIL_YOUNGEST_FEATURE_TAIL_CASE_NAME);
 			retList.add(devYoungestFeatureCompareOp);
 		}
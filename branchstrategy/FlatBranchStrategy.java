@@ -1,18 +1,17 @@
 package simpledb.versioned.benchmark.branchstrategy;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Random;
 
 import simpledb.Constants;
+import simpledb.versioned.benchmark.IntList;
 
 public class FlatBranchStrategy extends BranchStrategy {
 
 	static final String MASTER_FIRST_CHILD_CASE_NAME = "MASTER_FIRST_CHILD";
 
-	List<String> allBranches;
-	String master;
-	List<String> children;
+	IntList allBranches;
+	int master;
+	IntList children;
 	final Random insert, delete, update, read;
 
 	public FlatBranchStrategy() {
@@ -35,10 +34,10 @@ public class FlatBranchStrategy extends BranchStrategy {
 	}
 
 	@Override
-	public void init(String startBranchRoot) {
+	protected void init(int startBranchRoot) {
 		master = startBranchRoot;
-		children = new ArrayList<String>();
-		allBranches = new ArrayList<String>();
+		children = new IntList(INITIAL_NUM_BRANCHES);
+		allBranches = new IntList(INITIAL_NUM_BRANCHES);
 		allBranches.add(master);
 	}
 
@@ -51,35 +50,35 @@ public class FlatBranchStrategy extends BranchStrategy {
 	}
 
 	@Override
-	protected String[] getNextBranchesForScan() {
+	protected int[] getNextBranchIdsForScan() {
 		if (children.size() == 0) {
-			return new String[] { master };
+			return new int[] { master };
 		} else {
-			return new String[] { children.get(0) };
+			return new int[] { children.get(0) };
 		}
 	}
 
 	@Override
-	protected String getNextBranchNameForInsert() {
-		return getNextBranchNameForSingleBranchMod(insert);
+	protected int getNextBranchIdForInsert() {
+		return getNextBranchIdForSingleBranchMod(insert);
 	}
 
 	@Override
-	protected String getNextBranchNameForUpdate() {
-		return getNextBranchNameForSingleBranchMod(update);
+	protected int getNextBranchIdForUpdate() {
+		return getNextBranchIdForSingleBranchMod(update);
 	}
 
 	@Override
-	protected String getNextBranchNameForDelete() {
-		return getNextBranchNameForSingleBranchMod(delete);
+	protected int getNextBranchIdForDelete() {
+		return getNextBranchIdForSingleBranchMod(delete);
 	}
 
 	@Override
-	protected String getNextBranchNameForRead() {
-		return getNextBranchNameForSingleBranchMod(read);
+	protected int getNextBranchIdForRead() {
+		return getNextBranchIdForSingleBranchMod(read);
 	}
 
-	public String getNextBranchNameForSingleBranchMod(Random rand) {
+	public int getNextBranchIdForSingleBranchMod(Random rand) {
 		int numChildren = children.size();
 		if (numChildren == 0) {
 			return master;
@@ -101,11 +100,11 @@ public class FlatBranchStrategy extends BranchStrategy {
 
 	@Override
 	public BranchOpData getNextForBranch() {
-		String parent = master;
-		String newBranchName = generateBranchNames(1)[0];
-		children.add(newBranchName);
-		allBranches.add(newBranchName);
-		return new BranchOpData(parent, newBranchName);
+		int parent = master;
+		int newBranch = addBranch(generateBranchNames(1)[0]);
+		children.add(newBranch);
+		allBranches.add(newBranch);
+		return new BranchOpData(branchIds, parent, newBranch);
 	}
 
 	@Override
@@ -114,8 +113,8 @@ public class FlatBranchStrategy extends BranchStrategy {
 			throw new IllegalStateException();
 		}
 		
-		String[] branches = new String[] { master, children.get(0) };
-		CompareOpData out = new CompareOpData(branches);
+		int[] branches = new int[] { master, children.get(0) };
+		CompareOpData out = new CompareOpData(branchIds, branches);
 		out.setSubOperationName(MASTER_FIRST_CHILD_CASE_NAME);
 		return new CompareOpData[] { out };
 	}
@@ -1,11 +1,15 @@
 package simpledb.versioned.benchmark.branchstrategy;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
 import simpledb.Constants;
+import simpledb.versioned.benchmark.BranchIds;
+import simpledb.versioned.benchmark.IntList;
 import simpledb.versioned.benchmark.ycsb.generator.DiscreteGenerator;
+import simpledb.versioned.benchmark.ycsb.generator.DiscreteGenerator.Sampler;
 
 public class ScientificBranchStrategy extends BranchStrategy {
 
@@ -31,33 +35,36 @@ public class ScientificBranchStrategy extends BranchStrategy {
 	final double probabilityCreateActiveFromMainline;
 	final double probabilityEndActive;
 
-	class BranchLine {
-		String mainelineForkedOff;
-		List<String> branchesInActiveLine;
+	class BranchLine implements Serializable {
+		int mainelineForkedOff;
+		IntList branchesInActiveLine;
 
-		public BranchLine(String mainelineForkedOff) {
+		public BranchLine(int mainelineForkedOff) {
 			this.mainelineForkedOff = mainelineForkedOff;
-			branchesInActiveLine = new ArrayList<String>();
+			branchesInActiveLine = new IntList(INITIAL_NUM_BRANCHES);
 		}
 		
-		public String getLatest() {
-			return branchesInActiveLine.get(branchesInActiveLine.size() - 1);
+		public int getLatest() {
+			return branchesInActiveLine.getLast();
 		}
 	}
 
-	List<String> allBranches;
-	List<String> mainlines;
+	IntList allBranches;
+	IntList mainlines;
 	List<BranchLine> active;
 	List<BranchLine> retired;
 
 	final Random insert, delete, update, read, scan, compare, treeMod;
 	final DiscreteGenerator branchOperationChooser;
+	// positions of the operations in the chooser, -1 if never chosen
+	int extendMainlineOp = -1, extendActiveOp = -1, createActiveFromActiveOp = -1,
+			createActiveFromMainlineOp = -1, endActiveOp = -1;
 
 	public ScientificBranchStrategy(double probabilityExtendMainline,
 			double probabilityExtendActive,
 			double probabilityCreateActiveFromActive,
 			double probabilityCreateActiveFromMainline,
-			double probabilityEndActive) {
+			double probabilityEndActive, Sampler sampler) {
 
 		try {
 			insert = new Random(Long.parseLong(System
@@ -91,40 +98,40 @@ public class ScientificBranchStrategy extends BranchStrategy {
 		this.probabilityCreateActiveFromMainline = probabilityCreateActiveFromMainline;
 		this.probabilityEndActive = probabilityEndActive;
 
-		branchOperationChooser = new DiscreteGenerator(treeMod);
+		branchOperationChooser = new DiscreteGenerator(treeMod, sampler);
 
 		if (probabilityExtendMainline > 0) {
-			branchOperationChooser.addValue(probabilityExtendMainline,
+			extendMainlineOp = branchOperationChooser.addValue(probabilityExtendMainline,
 					EXTEND_MAINLINE_PROB_PROPERTY);
 		}
 
 		if (probabilityExtendActive > 0) {
-			branchOperationChooser.addValue(probabilityExtendActive,
+			extendActiveOp = branchOperationChooser.addValue(probabilityExtendActive,
 					EXTEND_ACTIVE_PROB_PROPERTY);
 		}
 
 		if (probabilityCreateActiveFromActive > 0) {
-			branchOperationChooser.addValue(probabilityCreateActiveFromActive,
+			createActiveFromActiveOp = branchOperationChooser.addValue(probabilityCreateActiveFromActive,
 					CREATE_ACTIVE_FROM_ACTIVE_PROB_PROPERTY);
 		}
 
 		if (probabilityCreateActiveFromMainline > 0) {
-			branchOperationChooser.addValue(
+			createActiveFromMainlineOp = branchOperationChooser.addValue(
 					probabilityCreateActiveFromMainline,
 					CREATE_ACTIVE_FROM_MAIN_PROB_PROPERTY);
 		}
 
 		if (probabilityEndActive > 0) {
-			branchOperationChooser.addValue(probabilityEndActive,
+			endActiveOp = branchOperationChooser.addValue(probabilityEndActive,
 					END_ACTIVE_PROB_PROPERTY);
 		}
 	}
 
 	@Override
-	public void init(String startBranchRoot) {
-		allBranches = new ArrayList<String>();
+	protected void init(int startBranchRoot) {
+		allBranches = new IntList(INITIAL_NUM_BRANCHES);
 		allBranches.add(startBranchRoot);
-		mainlines = new ArrayList<String>();
+		mainlines = new IntList(INITIAL_NUM_BRANCHES);
 		mainlines.add(startBranchRoot);
 		active = new ArrayList<BranchLine>();
 		retired = new ArrayList<BranchLine>();
@@ -139,12 +146,12 @@ public class ScientificBranchStrategy extends BranchStrategy {
 	}
 
 	@Override
-	protected String[] getNextBranchesForScan() {
+	protected int[] getNextBranchIdsForScan() {
 		// Scan mainline head, earliest and latest actives
 		
-		List<String> branchesToScan = new ArrayList<String>();
+		IntList branchesToScan = new IntList(3);
 		
-		branchesToScan.add(mainlines.get(mainlines.size() - 1));
+		branchesToScan.add(mainlines.getLast());
 		
 		if (active.size() > 0) {
 			branchesToScan.add(active.get(0).getLatest());
@@ -154,47 +161,42 @@ public class ScientificBranchStrategy extends BranchStrategy {
 			branchesToScan.add(active.get(active.size() - 1).getLatest());
 		}
 		
-		String[] ret = new String[branchesToScan.size()];
-		for (int i = 0; i < ret.length; ++i) {
-			ret[i] = branchesToScan.get(i);
-		}
-		
-		return ret;
+		return branchesToScan.toArray();
 	}
 
 	@Override
-	protected String getNextBranchNameForInsert() {
-		return getNextBranchNameForSingleBranchMod(insert);
+	protected int getNextBranchIdForInsert() {
+		return getNextBranchIdForSingleBranchMod(insert);
 	}
 
 	@Override
-	protected String getNextBranchNameForUpdate() {
-		return getNextBranchNameForSingleBranchMod(update);
+	protected int getNextBranchIdForUpdate() {
+		return getNextBranchIdForSingleBranchMod(update);
 	}
 
 	@Override
-	protected String getNextBranchNameForDelete() {
-		return getNextBranchNameForSingleBranchMod(delete);
+	protected int getNextBranchIdForDelete() {
+		return getNextBranchIdForSingleBranchMod(delete);
 	}
 
 	@Override
-	protected String getNextBranchNameForRead() {
-		return getNextBranchNameForSingleBranchMod(read);
+	protected int getNextBranchIdForRead() {
+		return getNextBranchIdForSingleBranchMod(read);
 	}
 
-	public String getNextBranchNameForSingleBranchMod(Random rand) {
-		String tenativeSelected = null;
+	public int getNextBranchIdForSingleBranchMod(Random rand) {
+		int tenativeSelected;
 
 		// select tail of an active or tail of mainline
 		int tailOfMainlineIndex = mainlines.size() - 1;
-		String tailOfMainline = mainlines.get(tailOfMainlineIndex);
+		int tailOfMainline = mainlines.get(tailOfMainlineIndex);
 		tenativeSelected = tailOfMainline;
 
 		if (active.size() != 0) {
 			int activeIndex = rand.nextInt(active.size());
 			BranchLine selectedActive = active.get(activeIndex);
 			int tailOfActiveIndex = selectedActive.branchesInActiveLine.size() - 1;
-			String tailOfActiveBranch = selectedActive.branchesInActiveLine
+			int tailOfActiveBranch = selectedActive.branchesInActiveLine
 					.get(tailOfActiveIndex);
 			int activeOrMainline = rand.nextInt(2);
 			tenativeSelected = activeOrMainline == 0 ? tailOfMainline
@@ -212,22 +214,22 @@ public class ScientificBranchStrategy extends BranchStrategy {
 
 	@Override
 	public BranchOpData getNextForBranch() {
-		String parent = null;
-		String child = generateBranchNames(1)[0];
+		int parent = BranchIds.NO_BRANCH;
+		int childId = addBranch(generateBranchNames(1)[0]);
 
-		while (parent == null) {
-			String operation = branchOperationChooser.nextString();
-			if (operation.equals(EXTEND_MAINLINE_PROB_PROPERTY)) {
+		while (parent == BranchIds.NO_BRANCH) {
+			int operation = branchOperationChooser.nextIndex();
+			if (operation == extendMainlineOp) {
 				// extend mainline
-				parent = mainlines.get(mainlines.size() - 1);
+				parent = mainlines.getLast();
 
 				// move mainline head
-				mainlines.add(child);
-			} else if (operation.equals(CREATE_ACTIVE_FROM_MAIN_PROB_PROPERTY)) {
+				mainlines.add(childId);
+			} else if (operation == createActiveFromMainlineOp) {
 				// select a branch point from mainline uniformly at random
 				int mainlinePointToCreateFromIndex = treeMod.nextInt(mainlines
 						.size());
-				String mainlinePointToCreateFrom = mainlines
+				int mainlinePointToCreateFrom = mainlines
 						.get(mainlinePointToCreateFromIndex);
 
 				parent = mainlinePointToCreateFrom;
@@ -235,10 +237,9 @@ public class ScientificBranchStrategy extends BranchStrategy {
 				// create new branch line
 				BranchLine newBranchLine = new BranchLine(
 						mainlinePointToCreateFrom);
-				newBranchLine.branchesInActiveLine.add(child);
+				newBranchLine.branchesInActiveLine.add(childId);
 				active.add(newBranchLine);
-			} else if (operation
-					.equals(CREATE_ACTIVE_FROM_ACTIVE_PROB_PROPERTY)) {
+			} else if (operation == createActiveFromActiveOp) {
 				if (active.size() == 0) {
 					continue;
 				}
@@ -250,7 +251,7 @@ public class ScientificBranchStrategy extends BranchStrategy {
 				int currentActiveBranchLineIndex = treeMod
 						.nextInt(currentActiveBranchLine.branchesInActiveLine
 								.size());
-				String currentActiveBranchLineElementToCreateFrom = currentActiveBranchLine.branchesInActiveLine
+				int currentActiveBranchLineElementToCreateFrom = currentActiveBranchLine.branchesInActiveLine
 						.get(currentActiveBranchLineIndex);
 
 				parent = currentActiveBranchLineElementToCreateFrom;
@@ -260,9 +261,9 @@ public class ScientificBranchStrategy extends BranchStrategy {
 				// a later query
 				BranchLine newBranchLine = new BranchLine(
 						currentActiveBranchLine.mainelineForkedOff);
-				newBranchLine.branchesInActiveLine.add(child);
+				newBranchLine.branchesInActiveLine.add(childId);
 				active.add(newBranchLine);
-			} else if (operation.equals(EXTEND_ACTIVE_PROB_PROPERTY)) {
+			} else if (operation == extendActiveOp) {
 				if (active.size() == 0) {
 					continue;
 				}
@@ -276,14 +277,14 @@ public class ScientificBranchStrategy extends BranchStrategy {
 				// is an extension
 				int currentActiveBranchLineIndex = currentActiveBranchLine.branchesInActiveLine
 						.size() - 1;
-				String currentActiveBranchLineEndElement = currentActiveBranchLine.branchesInActiveLine
+				int currentActiveBranchLineEndElement = currentActiveBranchLine.branchesInActiveLine
 						.get(currentActiveBranchLineIndex);
 
 				parent = currentActiveBranchLineEndElement;
 
 				// take the end slot for later extensions
-				currentActiveBranchLine.branchesInActiveLine.add(child);
-			} else if (operation.equals(END_ACTIVE_PROB_PROPERTY)) {
+				currentActiveBranchLine.branchesInActiveLine.add(childId);
+			} else if (operation == endActiveOp) {
 				if (active.size() == 0) {
 					continue;
 				}
@@ -296,32 +297,32 @@ public class ScientificBranchStrategy extends BranchStrategy {
 				active.remove(activeIndex);
 			}
 		}
-		allBranches.add(child);
-		return new BranchOpData(parent, child);
+		allBranches.add(childId);
+		return new BranchOpData(branchIds, parent, childId);
 	}
 
 	@Override
 	public CompareOpData[] getNextForCompare() {
 		List<CompareOpData> compareOps = new ArrayList<CompareOpData>();
 		
-		String mainlineTail = mainlines.get(mainlines.size() - 1);
+		int mainlineTail = mainlines.getLast();
 		
 		if (active.size() == 0) {
 			throw new IllegalStateException();
 		}
 		
 		// Earliest active, mainline
-		String earliestActive = active.get(0).getLatest();
+		int earliestActive = active.get(0).getLatest();
 		CompareOpData earliestActiveMainlineCompareOp = 
-				new CompareOpData(new String[] { mainlineTail, earliestActive });
+				new CompareOpData(branchIds, new int[] { mainlineTail, earliestActive });
 		earliestActiveMainlineCompareOp.setSubOperationName(TAIL_EARLIEST_ACTIVE_TAIL_MAINLINE_CASE_NAME);
 		compareOps.add(earliestActiveMainlineCompareOp);
 		
 		if (active.size() > 1) {
 			// Latest active, mainline
-			String latestActive = active.get(active.size() - 1).getLatest();
+			int latestActive = active.get(active.size() - 1).getLatest();
 			CompareOpData latestActiveMainlineCompareOp = 
-					new CompareOpData(new String[] { mainlineTail, latestActive });
+					new CompareOpData(branchIds, new int[] { mainlineTail, latestActive });
 			latestActiveMainlineCompareOp.setSubOperationName(TAIL_LATEST_ACTIVE_TAIL_MAINLINE_CASE_NAME);
 			compareOps.add(latestActiveMainlineCompareOp);
 		}
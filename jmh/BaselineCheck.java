@@ -0,0 +1,135 @@
+package simpledb.versioned.benchmark.jmh;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Regression gate over JMH results written with "-rf csv". Compares every
+ * benchmark of a run against the same benchmark and parameters in a baseline
+ * and exits with 1 if any got slower by more than the tolerance.
+ * 
+ * Usage: BaselineCheck baseline.csv result.csv [tolerance, default 0.10]
+ */
+public class BaselineCheck {
+
+	static final double TOLERANCE_DEFAULT = 0.10;
+
+	static class Score {
+		final String mode;
+		final double score;
+		final String unit;
+
+		Score(String mode, double score, String unit) {
+			this.mode = mode;
+			this.score = score;
+			this.unit = unit;
+		}
+
+		/**
+		 * Relative slowdown of other against this, negative if it got faster.
+		 */
+		double slowdown(Score other) {
+			if (mode.compareTo("thrpt") == 0) {
+				return (score - other.score) / score;
+			}
+			return (other.score - score) / score;
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: BaselineCheck baseline.csv result.csv [tolerance]");
+			System.exit(2);
+		}
+		double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : TOLERANCE_DEFAULT;
+		Map<String, Score> baseline = read(args[0]);
+		Map<String, Score> result = read(args[1]);
+
+		int regressions = 0;
+		for (Entry<String, Score> e : result.entrySet()) {
+			Score base = baseline.get(e.getKey());
+			if (base == null) {
+				System.out.println("NEW        " + e.getKey());
+				continue;
+			}
+			double slowdown = base.slowdown(e.getValue());
+			String status = slowdown > tolerance ? "REGRESSION" : "ok        ";
+			if (slowdown > tolerance) {
+				regressions++;
+			}
+			System.out.println(String.format("%s %s: %.3f -> %.3f %s (%+.1f%%)", status, e.getKey(), base.score,
+					e.getValue().score, e.getValue().unit, 100 * slowdown));
+		}
+		for (String name : baseline.keySet()) {
+			if (!result.containsKey(name)) {
+				System.out.println("MISSING    " + name);
+			}
+		}
+		System.exit(regressions > 0 ? 1 : 0);
+	}
+
+	/**
+	 * Read the scores of a JMH CSV result, by benchmark name and parameters.
+	 */
+	static Map<String, Score> read(String file) throws IOException {
+		Map<String, Score> scores = new LinkedHashMap<String, Score>();
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			List<String> header = split(reader.readLine());
+			int benchmark = header.indexOf("Benchmark");
+			int mode = header.indexOf("Mode");
+			int score = header.indexOf("Score");
+			int unit = header.indexOf("Unit");
+			if (benchmark < 0 || mode < 0 || score < 0 || unit < 0) {
+				throw new IOException("Not a JMH CSV result: " + file);
+			}
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty()) {
+					continue;
+				}
+				List<String> row = split(line);
+				String name = row.get(benchmark);
+				for (int i = 0; i < header.size(); i++) {
+					if (header.get(i).startsWith("Param: ") && !row.get(i).isEmpty()) {
+						name += " " + header.get(i).substring("Param: ".length()) + "=" + row.get(i);
+					}
+				}
+				scores.put(name, new Score(row.get(mode), Double.parseDouble(row.get(score)), row.get(unit)));
+			}
+		} finally {
+			reader.close();
+		}
+		return scores;
+	}
+
+	static List<String> split(String line) {
+		List<String> fields = new ArrayList<String>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (c == '"') {
+				if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+					field.append('"');
+					i++;
+				} else {
+					quoted = !quoted;
+				}
+			} else if (c == ',' && !quoted) {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else {
+				field.append(c);
+			}
+		}
+		fields.add(field.toString());
+		return fields;
+	}
+}
@@ -0,0 +1,81 @@
+package simpledb.versioned.benchmark.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import simpledb.versioned.benchmark.ycsb.generator.DiscreteGenerator;
+import simpledb.versioned.benchmark.ycsb.generator.HotspotIntegerGenerator;
+import simpledb.versioned.benchmark.ycsb.generator.ScrambledZipfianGenerator;
+import simpledb.versioned.benchmark.ycsb.generator.ZipfianGenerator;
+
+/**
+ * Cost of drawing one value from the generators used to pick keys, branches
+ * and operations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GeneratorBenchmark {
+
+	static final long ITEMS = 1000000;
+
+	ZipfianGenerator zipfian;
+	ScrambledZipfianGenerator scrambled;
+	HotspotIntegerGenerator hotspot;
+	DiscreteGenerator discrete;
+	DiscreteGenerator discreteAlias;
+
+	@Setup
+	public void setup() {
+		Seeds.set();
+		zipfian = new ZipfianGenerator(ITEMS);
+		scrambled = new ScrambledZipfianGenerator(ITEMS);
+		hotspot = new HotspotIntegerGenerator(0, (int) ITEMS - 1, 0.2, 0.8);
+		discrete = new DiscreteGenerator(new Random(Seeds.SEED));
+		discreteAlias = new DiscreteGenerator(new Random(Seeds.SEED), DiscreteGenerator.Sampler.ALIAS);
+		String[] ops = { "insert", "update", "delete", "scan", "branch", "merge", "read", "query3", "query4", "diff",
+				"checkout" };
+		for (int i = 0; i < ops.length; i++) {
+			discrete.addValue(i + 1, ops[i]);
+			discreteAlias.addValue(i + 1, ops[i]);
+		}
+	}
+
+	@Benchmark
+	public long zipfianNextLong() {
+		return zipfian.nextLong();
+	}
+
+	@Benchmark
+	public long scrambledZipfianNextLong() {
+		return scrambled.nextLong();
+	}
+
+	@Benchmark
+	public int hotspotNextInt() {
+		return hotspot.nextInt();
+	}
+
+	@Benchmark
+	public String discreteNextString() {
+		return discrete.nextString();
+	}
+
+	@Benchmark
+	public int discreteNextIndex() {
+		return discrete.nextIndex();
+	}
+
+	@Benchmark
+	public int discreteAliasNextIndex() {
+		return discreteAlias.nextIndex();
+	}
+}
@@ -0,0 +1,61 @@
+package simpledb.versioned.benchmark.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import simpledb.IntField;
+import simpledb.versioned.benchmark.IntList;
+
+/**
+ * Cost of filling and iterating the IntLists that carry the keys of every
+ * operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class IntListBenchmark {
+
+	static final int KEYS = 1000;
+
+	@Param({ "16", "1000000" })
+	int initialSize;
+
+	IntList list;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		list = new IntList(initialSize);
+		for (int i = 0; i < KEYS; i++) {
+			list.add(i);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(KEYS)
+	public IntList add() {
+		list.clear();
+		for (int i = 0; i < KEYS; i++) {
+			list.add(i);
+		}
+		return list;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(KEYS)
+	public void iterate(Blackhole bh) {
+		for (IntField key : list) {
+			bh.consume(key.getValue());
+		}
+	}
+}
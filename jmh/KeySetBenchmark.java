@@ -0,0 +1,107 @@
+package simpledb.versioned.benchmark.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import simpledb.versioned.benchmark.IntList;
+import simpledb.versioned.benchmark.LayeredIntSetDistribution;
+import simpledb.versioned.benchmark.LinkedIntSetDistribution;
+import simpledb.versioned.benchmark.ycsb.generator.UniformIntegerGenerator;
+
+/**
+ * Cost of the per-branch key sets: sampling the keys of an update, read or
+ * delete, and adding or removing a batch of keys.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class KeySetBenchmark {
+
+	static final int BATCH = 100;
+
+	@Param({ "100000" })
+	int keys;
+
+	LinkedIntSetDistribution linked;
+	LayeredIntSetDistribution layered;
+	UniformIntegerGenerator branchGenerator;
+	IntList batch;
+	IntList out;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		Seeds.set();
+		linked = new LinkedIntSetDistribution(new UniformIntegerGenerator(0, 0));
+		LayeredIntSetDistribution parent = new LayeredIntSetDistribution(new UniformIntegerGenerator(0, 0));
+		for (int i = 0; i < keys; i++) {
+			linked.add(i);
+			parent.add(i);
+		}
+		// sample through a branch, as the workload does for every non-root branch
+		layered = parent.branch(new UniformIntegerGenerator(0, 0));
+		for (int i = 0; i < keys; i += 10) {
+			layered.remove(i);
+		}
+		branchGenerator = new UniformIntegerGenerator(0, 0);
+		batch = new IntList(BATCH);
+		for (int i = 0; i < BATCH; i++) {
+			batch.add(keys + i);
+		}
+		out = new IntList(BATCH);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public IntList linkedGetRandomKeys() {
+		out.clear();
+		linked.getRandomKeys(out, BATCH);
+		return out;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public LinkedIntSetDistribution linkedAddAllRemoveAll() {
+		linked.addAll(batch);
+		linked.removeAll(batch);
+		return linked;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public IntList layeredGetRandomKeys() {
+		out.clear();
+		layered.getRandomKeys(out, BATCH);
+		return out;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public LayeredIntSetDistribution layeredAddAllRemoveAll() {
+		layered.addAll(batch);
+		layered.removeAll(batch);
+		return layered;
+	}
+
+	/**
+	 * Branch a set with a write since it was last branched, so that its top
+	 * layer has to be frozen and pushed. Branching the same set again would
+	 * find its top layer empty, so every call branches a fresh parent off the
+	 * sampled set and writes one key into it first; that is included.
+	 */
+	@Benchmark
+	public LayeredIntSetDistribution layeredBranch() {
+		LayeredIntSetDistribution parent = layered.branch(branchGenerator);
+		parent.add(keys);
+		return parent.branch(branchGenerator);
+	}
+}
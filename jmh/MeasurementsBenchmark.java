@@ -0,0 +1,62 @@
+package simpledb.versioned.benchmark.jmh;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import simpledb.versioned.benchmark.ycsb.measurements.Measurements;
+import simpledb.versioned.benchmark.ycsb.measurements.MetricKey;
+
+/**
+ * Cost of recording one latency while several client threads record into the
+ * same Measurements, by name and by interned key.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(4)
+public class MeasurementsBenchmark {
+
+	static final String METRIC = "TABLE: t,TYPE: type,OPERATION: update,SUB-OPERATION: update, OP COUNT: 1";
+
+	@Param({ "histogram", "hdrhistogram" })
+	String measurementType;
+
+	@Param({ "false", "true" })
+	boolean intervals;
+
+	Measurements measurements;
+	MetricKey key;
+
+	@Setup
+	public void setup() {
+		Properties props = new Properties();
+		props.setProperty("measurementtype", measurementType);
+		measurements = new Measurements(props);
+		if (intervals) {
+			measurements.enableIntervals();
+		}
+		key = measurements.getMetricKey("t", "type", "update", "update", 1);
+	}
+
+	@Benchmark
+	public Measurements measure() {
+		measurements.measure(METRIC, 3);
+		return measurements;
+	}
+
+	@Benchmark
+	public Measurements measureNanosByKey() {
+		measurements.measureNanos(key, 3000000);
+		return measurements;
+	}
+}
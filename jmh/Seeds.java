@@ -0,0 +1,18 @@
+package simpledb.versioned.benchmark.jmh;
+
+import simpledb.Constants;
+
+/**
+ * The generators read their seed from a system property, as set by the
+ * client; benchmarks set a fixed one so runs are comparable.
+ */
+class Seeds {
+
+	static final long SEED = 42;
+
+	static void set() {
+		if (System.getProperty(Constants.RNG_SEED) == null) {
+			System.setProperty(Constants.RNG_SEED, Long.toString(SEED));
+		}
+	}
+}
@@ -0,0 +1,48 @@
+#!/bin/sh
+# Build and run the driver microbenchmarks, then compare them against the
+# baseline of this machine, or record that baseline. A check on a machine
+# without a baseline passes and records one.
+#
+# Usage: jmh/run.sh check|record [JMH options]
+#
+# CLASSPATH must hold the compiled driver, simpledb and their dependencies,
+# JMH_CLASSPATH the jmh-core and jmh-generator-annprocess jars and theirs.
+# TOLERANCE is the allowed slowdown for check, 0.10 by default.
+
+set -e
+
+mode=$1
+if [ "$mode" != check ] && [ "$mode" != record ]; then
+	echo "Usage: $0 check|record [JMH options]" >&2
+	exit 2
+fi
+shift
+
+if [ -z "$CLASSPATH" ] || [ -z "$JMH_CLASSPATH" ]; then
+	echo "Set CLASSPATH to the driver and simpledb classes and JMH_CLASSPATH to the JMH jars" >&2
+	exit 2
+fi
+
+dir=$(cd "$(dirname "$0")" && pwd)
+out=${JMH_OUT:-$dir/../jmh-classes}
+baseline=$dir/baselines/$(hostname -s).csv
+cp="$out:$CLASSPATH:$JMH_CLASSPATH"
+
+mkdir -p "$out"
+# the JMH annotation processor writes the benchmark list next to the classes
+javac -cp "$CLASSPATH:$JMH_CLASSPATH" -d "$out" "$dir"/*.java
+java -cp "$cp" org.openjdk.jmh.Main -rf csv -rff "$out/result.csv" "$@"
+
+if [ "$mode" = record ]; then
+	mkdir -p "$dir/baselines"
+	cp "$out/result.csv" "$baseline"
+	echo "Recorded $baseline"
+elif [ -f "$baseline" ]; then
+	java -cp "$cp" simpledb.versioned.benchmark.jmh.BaselineCheck "$baseline" "$out/result.csv" \
+		"${TOLERANCE:-0.10}"
+else
+	# a first run has nothing to gate against, so it becomes the baseline
+	mkdir -p "$dir/baselines"
+	cp "$out/result.csv" "$baseline"
+	echo "No baseline for this machine, nothing checked; recorded this run as $baseline"
+fi
@@ -1,39 +1,53 @@
 package simpledb.versioned.benchmark.loaddistribution;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.Arrays;
 
+import simpledb.versioned.benchmark.IntList;
+
+/**
+ * How many tuples the build loads into each branch. Branches are known by the
+ * dense ids of the branch strategy, so their counts live in arrays indexed by
+ * branch id.
+ */
 public abstract class LoadDistribution {
 
+	static final int INITIAL_NUM_BRANCHES = 16;
+
 	private final int numInitialTuples;
 	private final int numInitialNewBranches;
-	private final Map<String, Integer> branchNameToNumTuplesRemaining;
-	private final Map<String, Integer> branchNameToNumTuplesInsertedUpdated;
-	private final Map<String, Integer> branchNameToNumTuplesInsertedUpdatedSinceLastCommit;
+	private int[] numTuplesRemaining;
+	private int[] numTuplesInsertedUpdated;
+	private int[] numTuplesInsertedUpdatedSinceLastCommit;
+	private int numBranches;
 	private volatile int totalNumTuplesInserted;
 
 	public LoadDistribution(int numInitialNewBranches, int numInitialTuples) {
 		this.numInitialNewBranches = numInitialNewBranches;
 		this.numInitialTuples = numInitialTuples;
-		branchNameToNumTuplesRemaining = new HashMap<>();
-		branchNameToNumTuplesInsertedUpdated = new HashMap<>();
-		branchNameToNumTuplesInsertedUpdatedSinceLastCommit = new HashMap<>();
+		numTuplesRemaining = new int[INITIAL_NUM_BRANCHES];
+		numTuplesInsertedUpdated = new int[INITIAL_NUM_BRANCHES];
+		numTuplesInsertedUpdatedSinceLastCommit = new int[INITIAL_NUM_BRANCHES];
+		numBranches = 0;
 		totalNumTuplesInserted = 0;
 	}
 
 	protected abstract int getInitialNumTuplesToInsert(String branchName);
 
-	public void addBranch(String branchName) {
-		int initialNumTuplesToInsertForBranch = getInitialNumTuplesToInsert(branchName);
-		branchNameToNumTuplesRemaining.put(branchName, initialNumTuplesToInsertForBranch);
-		branchNameToNumTuplesInsertedUpdated.put(branchName, 0);
-		branchNameToNumTuplesInsertedUpdatedSinceLastCommit.put(branchName, 0);
+	public void addBranch(int branchId, String branchName) {
+		if (branchId >= numTuplesRemaining.length) {
+			int length = Math.max(branchId + 1, 2 * numTuplesRemaining.length);
+			numTuplesRemaining = Arrays.copyOf(numTuplesRemaining, length);
+			numTuplesInsertedUpdated = Arrays.copyOf(numTuplesInsertedUpdated, length);
+			numTuplesInsertedUpdatedSinceLastCommit = Arrays.copyOf(numTuplesInsertedUpdatedSinceLastCommit, length);
+		}
+		numTuplesRemaining[branchId] = getInitialNumTuplesToInsert(branchName);
+		numTuplesInsertedUpdated[branchId] = 0;
+		numTuplesInsertedUpdatedSinceLastCommit[branchId] = 0;
+		numBranches = Math.max(numBranches, branchId + 1);
 	}
 
-	public int getRemainingToInsert(String branchName) {
-		return branchNameToNumTuplesRemaining.get(branchName);
+	public int getRemainingToInsert(int branchId) {
+		return numTuplesRemaining[branchId];
 	}
 
 	public int getTotalInitialNumTuples() {
@@ -54,51 +68,41 @@ public abstract class LoadDistribution {
 
 	public int getNumBranchesWithTuplesRemaining() {
 		int num = 0;
-		for (String branchName : branchNameToNumTuplesRemaining.keySet()) {
-			int numRemaining = branchNameToNumTuplesRemaining.get(branchName);
-			if (numRemaining > 0) {
+		for (int branchId = 0; branchId < numBranches; branchId++) {
+			if (numTuplesRemaining[branchId] > 0) {
 				num++;
 			}
 		}
 		return num;
 	}
 
-	public String[] getBranchesWithRemainingInserts() {
-		List<String> branchesWithRemainingInserts = new ArrayList<String>();
-		for (String branchName : branchNameToNumTuplesRemaining.keySet()) {
-			int numRemaining = branchNameToNumTuplesRemaining.get(branchName);
-			if (numRemaining > 0) {
-				branchesWithRemainingInserts.add(branchName);
+	public int[] getBranchesWithRemainingInserts() {
+		IntList branchesWithRemainingInserts = new IntList(numBranches);
+		for (int branchId = 0; branchId < numBranches; branchId++) {
+			if (numTuplesRemaining[branchId] > 0) {
+				branchesWithRemainingInserts.add(branchId);
 			}
 		}
-		return branchesWithRemainingInserts.toArray(new String[] {});
+		return branchesWithRemainingInserts.toArray();
 	}
 
-	public int getNumInsertedUpdated(String branchName) {
-		return branchNameToNumTuplesInsertedUpdated.get(branchName);
+	public int getNumInsertedUpdated(int branchId) {
+		return numTuplesInsertedUpdated[branchId];
 	}
 
-	public void updateNumInsertedUpdated(String branchName, int numInserted) {
+	public void updateNumInsertedUpdated(int branchId, int numInserted) {
 		totalNumTuplesInserted += numInserted;
-		int currentNumInserted = branchNameToNumTuplesInsertedUpdated.get(branchName);
-		branchNameToNumTuplesInsertedUpdated.put(branchName, currentNumInserted + numInserted);
-
-		int currentNumInsertedSinceCommit = branchNameToNumTuplesInsertedUpdatedSinceLastCommit.get(branchName);
-		branchNameToNumTuplesInsertedUpdatedSinceLastCommit.put(branchName,
-				currentNumInsertedSinceCommit + numInserted);
-
-		int oldNumRemaining = branchNameToNumTuplesRemaining.get(branchName);
-		int tenativeNewNumRemaining = oldNumRemaining - numInserted;
-		int newNumRemaining = tenativeNewNumRemaining < 0 ? 0 : tenativeNewNumRemaining;
-		branchNameToNumTuplesRemaining.put(branchName, newNumRemaining);
+		numTuplesInsertedUpdated[branchId] += numInserted;
+		numTuplesInsertedUpdatedSinceLastCommit[branchId] += numInserted;
+		numTuplesRemaining[branchId] = Math.max(0, numTuplesRemaining[branchId] - numInserted);
 	}
 
-	public void resetNumTuplesInsertedUpdatedSinceLastCommit(String branchName) {
-		branchNameToNumTuplesInsertedUpdatedSinceLastCommit.put(branchName, 0);
+	public void resetNumTuplesInsertedUpdatedSinceLastCommit(int branchId) {
+		numTuplesInsertedUpdatedSinceLastCommit[branchId] = 0;
 	}
 
-	public int getNumTuplesInsertedUpdatedSinceLastCommit(String branchName) {
-		return branchNameToNumTuplesInsertedUpdatedSinceLastCommit.get(branchName);
+	public int getNumTuplesInsertedUpdatedSinceLastCommit(int branchId) {
+		return numTuplesInsertedUpdatedSinceLastCommit[branchId];
 	}
 
 	public int getTotalNumTuplesRemaining() {
@@ -1,13 +1,15 @@
 package simpledb.versioned.benchmark.tupleloadstrategy;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Properties;
 
 import simpledb.TupleDesc;
 import simpledb.Type;
 import simpledb.versioned.benchmark.IntList;
-import simpledb.versioned.benchmark.LinkedIntSetDistribution;
+import simpledb.versioned.benchmark.LayeredIntSetDistribution;
 import simpledb.versioned.benchmark.ycsb.generator.CounterGenerator;
 import simpledb.versioned.benchmark.ycsb.generator.RangeIntegerGenerator;
 import simpledb.versioned.benchmark.ycsb.generator.UniformIntegerGenerator;
@@ -61,16 +63,22 @@ public abstract class AbstractTupleLoadStrategy implements TupleLoadStrategy {
      */
     public static final String KEY_HOTSPOT_OPN_FRACTION_DEFAULT = "0.8";
 
-    class BranchData {
-	final String branchName;
-	final LinkedIntSetDistribution keys;
+    static final int INITIAL_NUM_BRANCHES = 16;
 
-	public BranchData(String branchName) {
-	    this.branchName = branchName;
-	    keys = new LinkedIntSetDistribution(getKeyDistribution());
+    class BranchData implements Serializable {
+	final int branchId;
+	final LayeredIntSetDistribution keys;
+
+	public BranchData(int branchId) {
+	    this(branchId, new LayeredIntSetDistribution(getKeyDistribution()));
+	}
+
+	public BranchData(int branchId, LayeredIntSetDistribution keys) {
+	    this.branchId = branchId;
+	    this.keys = keys;
 	}
 
-	public void addAll(LinkedIntSetDistribution newKeys) {
+	public void addAll(LayeredIntSetDistribution newKeys) {
 	    keys.addAll(newKeys);
 	}
 
@@ -83,21 +91,22 @@ public abstract class AbstractTupleLoadStrategy implements TupleLoadStrategy {
 	}
     }
 
-    Map<String, BranchData> branchNameToBranchData;
+    // by branch id
+    BranchData[] branchData;
     final TupleDesc td;
     final Type primaryKeyType;
     final int primaryKeyIndex;
     CounterGenerator insertKeyGenerator;
     Properties p;
-    // should be thread local
-    IntList outList;
+    // one per client thread, each thread works on its own branches
+    transient ThreadLocal<IntList> outList;
 
     public AbstractTupleLoadStrategy(TupleDesc td, Properties p) {
 	this.td = td;
 	primaryKeyIndex = td.getPrimaryKeyIndex();
 	primaryKeyType = td.getFieldType(primaryKeyIndex);
 	insertKeyGenerator = new CounterGenerator(0);
-	branchNameToBranchData = new HashMap<String, BranchData>();
+	branchData = new BranchData[INITIAL_NUM_BRANCHES];
 	this.p = p;
 	switch (primaryKeyType) {
 	case INT_TYPE:
@@ -105,7 +114,16 @@ public abstract class AbstractTupleLoadStrategy implements TupleLoadStrategy {
 	default:
 	    throw new IllegalArgumentException("Primary key must be an int!");
 	}
-	outList = new IntList();
+	outList = newOutList();
+    }
+
+    private static ThreadLocal<IntList> newOutList() {
+	return ThreadLocal.withInitial(IntList::new);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+	in.defaultReadObject();
+	outList = newOutList();
     }
 
     private RangeIntegerGenerator getKeyDistribution() {
@@ -125,81 +143,95 @@ public abstract class AbstractTupleLoadStrategy implements TupleLoadStrategy {
     }
 
     @Override
-    public void addBranch(String childBranchName, String... parentBranchNames) {
-	if (branchNameToBranchData.containsKey(childBranchName)) {
-	    throw new IllegalArgumentException("Branch already exists: " + childBranchName);
+    public void addBranch(int childBranchId, int... parentBranchIds) {
+	if (childBranchId < branchData.length && branchData[childBranchId] != null) {
+	    throw new IllegalArgumentException("Branch already exists: " + childBranchId);
 	}
-	BranchData newBranchData = new BranchData(childBranchName);
+	if (childBranchId >= branchData.length) {
+	    branchData = Arrays.copyOf(branchData, Math.max(childBranchId + 1, 2 * branchData.length));
+	}
+	// a single parent shares its keys with the child without copying them
+	if (parentBranchIds.length == 1) {
+	    BranchData parentData = getBranchData(parentBranchIds[0]);
+	    branchData[childBranchId] = new BranchData(childBranchId, parentData.keys.branch(getKeyDistribution()));
+	    return;
+	}
+
+	BranchData newBranchData = new BranchData(childBranchId);
 
 	// should add to set in backwards fashion so that higher precedence
 	// branches overwrite the effects of lower precedence branches, but
 	// doing it the way it is below is ok since
 	// just taking the union of keys that exist in all the
 	// branches (don't have to deal with conflicting record ids)
-	for (String parentBranchName : parentBranchNames) {
-	    BranchData branchData = getBranchData(parentBranchName);
-	    newBranchData.addAll(branchData.keys);
+	for (int parentBranchId : parentBranchIds) {
+	    BranchData parentData = getBranchData(parentBranchId);
+	    newBranchData.addAll(parentData.keys);
 	}
 
-	branchNameToBranchData.put(childBranchName, newBranchData);
+	branchData[childBranchId] = newBranchData;
+    }
+
+    @Override
+    public int getNumKeys() {
+	return insertKeyGenerator.lastInt() + 1;
     }
 
-    private BranchData getBranchData(String branchName) {
-	if (!branchNameToBranchData.containsKey(branchName)) {
-	    throw new IllegalArgumentException("Branch does not exist: " + branchName);
+    private BranchData getBranchData(int branchId) {
+	if (branchId < 0 || branchId >= branchData.length || branchData[branchId] == null) {
+	    throw new IllegalArgumentException("Branch does not exist: " + branchId);
 	}
-	return branchNameToBranchData.get(branchName);
+	return branchData[branchId];
     }
 
     @Override
-    public IntList getNextForInsert(String branchName) {
+    public IntList getNextForInsert(int branchId) {
+	IntList outList = this.outList.get();
 	outList.clear();
-	int numKeys = getNumForInsert(branchName);
+	int numKeys = getNumForInsert(branchId);
 	for (int i = 0; i < numKeys; i++) {
 	    int nextInt = insertKeyGenerator.nextInt();
 	    outList.add(nextInt);
 	}
-	BranchData branchData = getBranchData(branchName);
-	branchData.addAll(outList);
+	getBranchData(branchId).addAll(outList);
 	return outList;
     }
 
     @Override
-    public IntList getNextForUpdate(String branchName) {
-	int numKeys = getNumForUpdate(branchName);
-	IntList keysForUpdate = getKeysForModifyOperation(branchName, numKeys);
+    public IntList getNextForUpdate(int branchId) {
+	int numKeys = getNumForUpdate(branchId);
+	IntList keysForUpdate = getKeysForModifyOperation(branchId, numKeys);
 	return keysForUpdate;
     }
 
     @Override
-    public IntList getNextForDelete(String branchName) {
-	int numKeys = getNumForDelete(branchName);
-	IntList keysForDelete = getKeysForModifyOperation(branchName, numKeys);
-	BranchData branchData = getBranchData(branchName);
-	branchData.removeAll(keysForDelete);
+    public IntList getNextForDelete(int branchId) {
+	int numKeys = getNumForDelete(branchId);
+	IntList keysForDelete = getKeysForModifyOperation(branchId, numKeys);
+	getBranchData(branchId).removeAll(keysForDelete);
 	return keysForDelete;
     }
 
     @Override
-    public IntList getNextForRead(String branchName) {
-	int numKeys = getNumForRead(branchName);
-	return getKeysForModifyOperation(branchName, numKeys);
+    public IntList getNextForRead(int branchId) {
+	int numKeys = getNumForRead(branchId);
+	return getKeysForModifyOperation(branchId, numKeys);
     }
 
-    private IntList getKeysForModifyOperation(String branchName, int numKeys) {
+    private IntList getKeysForModifyOperation(int branchId, int numKeys) {
+	IntList outList = this.outList.get();
 	outList.clear();
-	BranchData branchData = getBranchData(branchName);
-	branchData.keys.getRandomKeys(outList, numKeys);
+	getBranchData(branchId).keys.getRandomKeys(outList, numKeys);
 	return outList;
     }
 
-    protected abstract int getNumForInsert(String branchName);
+    protected abstract int getNumForInsert(int branchId);
 
-    protected abstract int getNumForUpdate(String branchName);
+    protected abstract int getNumForUpdate(int branchId);
 
-    protected abstract int getNumForDelete(String branchName);
+    protected abstract int getNumForDelete(int branchId);
 
-    protected abstract int getNumForRead(String branchName);
+    protected abstract int getNumForRead(int branchId);
 
     private KeyDistribution getKeyDistributionType(String keyDistributionName) {
 	for (KeyDistribution kd : KeyDistribution.values()) {
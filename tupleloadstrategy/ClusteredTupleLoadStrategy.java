@@ -28,22 +28,22 @@ public class ClusteredTupleLoadStrategy extends AbstractTupleLoadStrategy {
 	}
 
 	@Override
-	protected int getNumForInsert(String branchName) {
+	protected int getNumForInsert(int branchId) {
 		return numTuplesForUpdateInsert;
 	}
 
 	@Override
-	protected int getNumForUpdate(String branchName) {
+	protected int getNumForUpdate(int branchId) {
 		return numTuplesForUpdateInsert;
 	}
 
 	@Override
-	protected int getNumForDelete(String branchName) {
+	protected int getNumForDelete(int branchId) {
 		return numTuplesForDelete;
 	}
 
 	@Override
-	protected int getNumForRead(String branchName) {
+	protected int getNumForRead(int branchId) {
 		return numTuplesForRead;
 	}
 }
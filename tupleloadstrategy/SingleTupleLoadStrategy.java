@@ -12,22 +12,22 @@ public class SingleTupleLoadStrategy extends AbstractTupleLoadStrategy{
 	}
 
 	@Override
-	protected int getNumForInsert(String branchName) {
+	protected int getNumForInsert(int branchId) {
 		return NUM_TUPLES_FOR_OP;
 	}
 
 	@Override
-	protected int getNumForUpdate(String branchName) {
+	protected int getNumForUpdate(int branchId) {
 		return NUM_TUPLES_FOR_OP;
 	}
 
 	@Override
-	protected int getNumForDelete(String branchName) {
+	protected int getNumForDelete(int branchId) {
 		return NUM_TUPLES_FOR_OP;
 	}
 
 	@Override
-	protected int getNumForRead(String branchName) {
+	protected int getNumForRead(int branchId) {
 		return NUM_TUPLES_FOR_OP;
 	}
 
@@ -1,16 +1,28 @@
 package simpledb.versioned.benchmark.tupleloadstrategy;
 
+import java.io.Serializable;
+
 import simpledb.versioned.benchmark.IntList;
 
 
-public interface TupleLoadStrategy {
-	IntList getNextForInsert(String branchName);
+/**
+ * Picks the primary keys operations work on. Branches are known by the dense
+ * ids of the branch strategy.
+ */
+public interface TupleLoadStrategy extends Serializable {
+	IntList getNextForInsert(int branchId);
+
+	IntList getNextForUpdate(int branchId);
 
-	IntList getNextForUpdate(String branchName);
+	IntList getNextForDelete(int branchId);
 
-	IntList getNextForDelete(String branchName);
+	IntList getNextForRead(int branchId);
 
-	IntList getNextForRead(String branchName);
+	void addBranch(int childBranchId, int... parentBranchIds);
 
-	void addBranch(String childBranchName, String... parentBranchNames);
+	/**
+	 * The number of primary keys handed out to inserts so far. Keys are 0 to
+	 * this number minus one.
+	 */
+	int getNumKeys();
 }
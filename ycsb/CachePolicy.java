@@ -0,0 +1,192 @@
+/**                                                                                                                                                                                
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.                                                                                                                             
+ *                                                                                                                                                                                 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you                                                                                                             
+ * may not use this file except in compliance with the License. You                                                                                                                
+ * may obtain a copy of the License at                                                                                                                                             
+ *                                                                                                                                                                                 
+ * http://www.apache.org/licenses/LICENSE-2.0                                                                                                                                      
+ *                                                                                                                                                                                 
+ * Unless required by applicable law or agreed to in writing, software                                                                                                             
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                                                                               
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or                                                                                                                 
+ * implied. See the License for the specific language governing                                                                                                                    
+ * permissions and limitations under the License. See accompanying                                                                                                                 
+ * LICENSE file.                                                                                                                                                                   
+ */
+
+package simpledb.versioned.benchmark.ycsb;
+
+import java.util.Properties;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import simpledb.versioned.benchmark.ycsb.measurements.Measurements;
+
+/**
+ * Decides when a client thread drops the OS page cache and runs a full
+ * collection between operations. Drops always happen outside of the measured
+ * transactions; their cost is measured separately under DROP_METRIC.
+ * 
+ * Policies, set with the "cachepolicy" property:
+ * <ul>
+ * <li>cold: before every operation and after every scan, diff and QUERY_3
+ * sub-operation (the default)</li>
+ * <li>warm: never</li>
+ * <li>cold-per-op-type: before the first operation of each run of operations
+ * of the same type</li>
+ * <li>every-N, e.g. every-100: before every N-th operation</li>
+ * </ul>
+ * 
+ * There is one policy per VersionDB instance, so per client thread, and it is
+ * not thread safe. Drops are still coordinated across threads: under every
+ * policy but warm, each measured transaction holds a shared lock that a drop
+ * takes exclusively, so a drop waits for the transactions of the other
+ * threads in flight and holds off new ones until it is done. Under warm no
+ * drop can happen and measured transactions do not touch the lock.
+ */
+public class CachePolicy {
+
+	public static final String CACHE_POLICY_PROPERTY = "cachepolicy";
+	public static final String COLD = "cold";
+	public static final String WARM = "warm";
+	public static final String COLD_PER_OP_TYPE = "cold-per-op-type";
+	public static final String EVERY_N_PREFIX = "every-";
+	public static final String CACHE_POLICY_DEFAULT = COLD;
+
+	/**
+	 * Metric under which the time spent dropping caches is reported.
+	 */
+	public static final String DROP_METRIC = "CACHE DROP";
+
+	static final ReentrantReadWriteLock MEASURED_LOCK = new ReentrantReadWriteLock();
+
+	enum Mode {
+		COLD, WARM, COLD_PER_OP_TYPE, EVERY_N
+	}
+
+	final Mode mode;
+	final int every;
+	final Measurements measurements;
+
+	long operations = 0;
+	String lastOperation = null;
+
+	CachePolicy(Mode mode, int every, Measurements measurements) {
+		this.mode = mode;
+		this.every = every;
+		this.measurements = measurements;
+	}
+
+	public static CachePolicy fromProperties(Properties props, Measurements measurements) {
+		String policy = props.getProperty(CACHE_POLICY_PROPERTY, CACHE_POLICY_DEFAULT);
+		if (policy.compareTo(COLD) == 0) {
+			return new CachePolicy(Mode.COLD, 1, measurements);
+		} else if (policy.compareTo(WARM) == 0) {
+			return new CachePolicy(Mode.WARM, 0, measurements);
+		} else if (policy.compareTo(COLD_PER_OP_TYPE) == 0) {
+			return new CachePolicy(Mode.COLD_PER_OP_TYPE, 0, measurements);
+		} else if (policy.startsWith(EVERY_N_PREFIX)) {
+			int every;
+			try {
+				every = Integer.parseInt(policy.substring(EVERY_N_PREFIX.length()));
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid " + CACHE_POLICY_PROPERTY + ": " + policy);
+			}
+			if (every <= 0) {
+				throw new IllegalArgumentException("Invalid " + CACHE_POLICY_PROPERTY + ": " + policy);
+			}
+			return new CachePolicy(Mode.EVERY_N, every, measurements);
+		}
+		throw new IllegalArgumentException("Unknown " + CACHE_POLICY_PROPERTY + ": " + policy);
+	}
+
+	/**
+	 * Called by the client thread before each operation.
+	 * 
+	 * @param operation
+	 *            the name of the operation about to run, or null if the
+	 *            workload cannot tell, in which case cold-per-op-type drops
+	 *            before every operation
+	 * @return the nanoseconds spent dropping, 0 if the policy did not drop
+	 */
+	public long beforeOperation(String operation) {
+		boolean drop;
+		switch (mode) {
+		case COLD:
+			drop = true;
+			break;
+		case COLD_PER_OP_TYPE:
+			drop = operation == null || lastOperation == null || operation.compareTo(lastOperation) != 0;
+			lastOperation = operation;
+			break;
+		case EVERY_N:
+			drop = operations % every == 0;
+			break;
+		default:
+			drop = false;
+		}
+		operations++;
+		return drop ? drop() : 0;
+	}
+
+	/**
+	 * Called by workloads between the sub-operations of an operation that
+	 * should each start cold.
+	 */
+	public void afterSubOperation() {
+		if (mode == Mode.COLD) {
+			drop();
+		}
+	}
+
+	/**
+	 * Drop the caches now, regardless of the policy, and measure how long it
+	 * took. Must not be called from within a measured transaction, nor under
+	 * warm while other threads run, as their transactions do not take the
+	 * lock then. Returns the nanoseconds spent, including waiting for other
+	 * threads' transactions.
+	 */
+	public long drop() {
+		long wait = System.nanoTime();
+		MEASURED_LOCK.writeLock().lock();
+		try {
+			long st = System.nanoTime();
+			Client.dropCaches();
+			long en = System.nanoTime();
+			if (measurements != null) {
+				measurements.measureNanos(DROP_METRIC, en - st);
+			}
+			return en - wait;
+		} finally {
+			MEASURED_LOCK.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Called before a measured transaction starts; returns the nanoseconds
+	 * spent waiting for a drop of another thread to finish. Only a lock that
+	 * is contended is timed, and warm does not lock at all.
+	 */
+	public long beginMeasured() {
+		if (mode == Mode.WARM) {
+			return 0;
+		}
+		// no drop holds or waits for the lock, so taking it cannot barge
+		// ahead of one
+		if (!MEASURED_LOCK.hasQueuedThreads() && MEASURED_LOCK.readLock().tryLock()) {
+			return 0;
+		}
+		long st = System.nanoTime();
+		MEASURED_LOCK.readLock().lock();
+		return System.nanoTime() - st;
+	}
+
+	/**
+	 * Called once a measured transaction is done.
+	 */
+	public void endMeasured() {
+		if (mode != Mode.WARM) {
+			MEASURED_LOCK.readLock().unlock();
+		}
+	}
+}
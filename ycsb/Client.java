@@ -24,14 +24,18 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.PrintWriter;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.SortedMap;
 import java.util.Vector;
+import java.util.concurrent.locks.LockSupport;
 
 import org.apache.log4j.BasicConfigurator;
 import org.apache.log4j.Level;
@@ -43,6 +47,7 @@ import simpledb.Constants;
 import simpledb.versioned.benchmark.GraphPrintWrapper;
 import simpledb.versioned.benchmark.ycsb.exporter.MeasurementsExporter;
 import simpledb.versioned.benchmark.ycsb.exporter.TextMeasurementsExporter;
+import simpledb.versioned.benchmark.ycsb.measurements.LogLinearHistogram;
 import simpledb.versioned.benchmark.ycsb.measurements.Measurements;
 import simpledb.versioned.utility.Utils;
 
@@ -63,17 +68,62 @@ class StatusThread extends Thread {
 	String _label;
 	boolean _standardstatus;
 	Runtime runtime;
+	long _sleeptime;
+	PrintWriter _intervalout;
 
 	/**
-	 * The interval for reporting status.
+	 * The default interval for reporting status.
 	 */
 	public static final long sleeptime = 5000;
 
+	/**
+	 * Header of the interval file. One ALL row per window carries the overall
+	 * throughput, followed by one row per metric measured in that window.
+	 */
+	static final String INTERVAL_HEADER = "time_ms,elapsed_ms,window_ms,metric,operations,ops_per_sec,p50_us,p99_us,max_us";
+
 	public StatusThread(Vector<Thread> threads, String label, boolean standardstatus) {
+		this(threads, label, standardstatus, sleeptime, null);
+	}
+
+	/**
+	 * @param intervalout
+	 *            if not null, per-window throughput and latency percentiles
+	 *            are written to it as CSV and it is closed when the thread
+	 *            finishes
+	 */
+	public StatusThread(Vector<Thread> threads, String label, boolean standardstatus, long sleeptime,
+			PrintWriter intervalout) {
 		_threads = threads;
 		_label = label;
 		_standardstatus = standardstatus;
+		_sleeptime = sleeptime;
+		_intervalout = intervalout;
 		runtime = Runtime.getRuntime();
+		if (_intervalout != null) {
+			Measurements.getMeasurements().enableIntervals();
+			_intervalout.println(INTERVAL_HEADER);
+		}
+	}
+
+	/**
+	 * Write one window of the interval file. The percentiles come from the
+	 * values measured since the previous window only.
+	 */
+	void writeInterval(long en, long elapsed, long window, long windowops) {
+		SortedMap<String, LogLinearHistogram> intervals = Measurements.getMeasurements().getIntervals();
+		double seconds = Math.max(window, 1) / 1000.0;
+		DecimalFormat d = new DecimalFormat("0.##");
+		String prefix = en + "," + elapsed + "," + window + ",";
+		_intervalout.println(prefix + "ALL," + windowops + "," + d.format(windowops / seconds) + ",,,");
+		for (Entry<String, LogLinearHistogram> e : intervals.entrySet()) {
+			LogLinearHistogram h = e.getValue();
+			long count = h.getCount();
+			_intervalout.println(prefix + "\"" + e.getKey().replace("\"", "\"\"") + "\"," + count + ","
+					+ d.format(count / seconds) + "," + h.getValueAtPercentile(50) + "," + h.getValueAtPercentile(99)
+					+ "," + h.getValueAtPercentile(100));
+		}
+		_intervalout.flush();
 	}
 
 	/**
@@ -111,6 +161,10 @@ class StatusThread extends Thread {
 
 			double curthroughput = 1000.0 * (((double) (totalops - lasttotalops)) / ((double) (en - lasten)));
 
+			if (_intervalout != null) {
+				writeInterval(en, interval, en - lasten, totalops - lasttotalops);
+			}
+
 			lasttotalops = totalops;
 			lasten = en;
 
@@ -139,12 +193,16 @@ class StatusThread extends Thread {
 			}
 
 			try {
-				sleep(sleeptime);
+				sleep(_sleeptime);
 			} catch (InterruptedException e) {
 				// do nothing
 			}
 
 		} while (!alldone);
+
+		if (_intervalout != null) {
+			_intervalout.close();
+		}
 	}
 }
 
@@ -168,6 +226,18 @@ class ClientThread extends Thread {
 	int _threadcount;
 	Object _workloadstate;
 	Properties _props;
+	String _loadmode;
+
+	/**
+	 * Metric of the open-loop latency of whole operations, from their
+	 * intended start to their end.
+	 */
+	static final String OPEN_LOOP_LATENCY_METRIC = "OPEN-LOOP: INTENDED LATENCY";
+
+	/**
+	 * Metric of how far behind schedule open-loop operations started.
+	 */
+	static final String OPEN_LOOP_DELAY_METRIC = "OPEN-LOOP: START DELAY";
 
 	/**
 	 * Constructor.
@@ -200,9 +270,66 @@ class ClientThread extends Thread {
 		_threadid = threadid;
 		_threadcount = threadcount;
 		_props = props;
+		_loadmode = props.getProperty(Client.LOAD_MODE_PROPERTY, Client.LOAD_MODE_DEFAULT);
 		// System.out.println("Interval = "+interval);
 	}
 
+	/**
+	 * Nanoseconds between the intended starts of two operations, fixed for the
+	 * constant load mode and exponentially distributed for the poisson one.
+	 */
+	long nextInterarrivalNanos() {
+		double mean = 1000000.0 / _target;
+		if (_loadmode.compareTo(Client.LOAD_MODE_POISSON) == 0) {
+			return (long) (-Math.log(1.0 - Utils.random().nextDouble()) * mean);
+		}
+		return (long) mean;
+	}
+
+	/**
+	 * Run the transactions open-loop: operations are scheduled at fixed
+	 * intended start times independent of how long earlier operations took,
+	 * and latencies are measured from the intended start. If an operation
+	 * stalls, the ones scheduled behind it start late and their latency shows
+	 * it, instead of being silently skipped as in the closed loop. A cache drop
+	 * that runs past an intended start pauses the schedule by the overrun, so
+	 * drops are never part of a measured latency.
+	 */
+	void runOpenLoop() {
+		Measurements measurements = Measurements.getMeasurements();
+		long intended = System.nanoTime();
+
+		while (!_workload.isStopRequested()) {
+			intended += nextInterarrivalNanos();
+
+			// time spent dropping caches past the intended start is not part of
+			// the schedule: this and every later intended start move back by
+			// it, while a drop that fit into the slack before it moves nothing
+			long dropped = _db.getCachePolicy().beforeOperation(_workload.getNextOperationName(_workloadstate));
+			if (dropped > 0) {
+				intended += Math.min(dropped, Math.max(0, System.nanoTime() - intended));
+			}
+
+			long now;
+			while ((now = System.nanoTime()) < intended) {
+				LockSupport.parkNanos(intended - now);
+			}
+
+			_db.setIntendedStart(intended);
+			boolean more = _workload.doTransaction(_db, _workloadstate);
+			long en = System.nanoTime();
+			_db.takeIntendedStart();
+
+			if (!more) {
+				break;
+			}
+
+			measurements.measureNanos(OPEN_LOOP_LATENCY_METRIC, en - intended);
+			measurements.measureNanos(OPEN_LOOP_DELAY_METRIC, now - intended);
+			_opsdone++;
+		}
+	}
+
 	public int getOpsDone() {
 		return _opsdone;
 	}
@@ -240,12 +367,14 @@ class ClientThread extends Thread {
 		}
 
 		try {
-			if (_dotransactions) {
+			if (_dotransactions && _loadmode.compareTo(Client.LOAD_MODE_CLOSED) != 0) {
+				runOpenLoop();
+			} else if (_dotransactions) {
 				long st = System.currentTimeMillis();
 
 				while (!_workload.isStopRequested()) {
 
-					Client.dropCaches();
+					_db.getCachePolicy().beforeOperation(_workload.getNextOperationName(_workloadstate));
 
 					if (!_workload.doTransaction(_db, _workloadstate)) {
 						break;
@@ -358,6 +487,18 @@ public class Client {
 
 	public static final String THREAD_COUNT_PROPERTY = "threadcount";
 
+	/**
+	 * How operations are paced: "closed" runs each operation once the previous
+	 * one finished, throttled to the target if one is given; "constant" and
+	 * "poisson" run open-loop at the target throughput, with fixed or
+	 * exponentially distributed gaps between intended starts.
+	 */
+	public static final String LOAD_MODE_PROPERTY = "loadmode";
+	public static final String LOAD_MODE_CLOSED = "closed";
+	public static final String LOAD_MODE_CONSTANT = "constant";
+	public static final String LOAD_MODE_POISSON = "poisson";
+	public static final String LOAD_MODE_DEFAULT = LOAD_MODE_CLOSED;
+
 	/**
 	 * The maximum amount of time (in seconds) for which the benchmark will be
 	 * run.
@@ -371,6 +512,19 @@ public class Client {
 	private static final String MEASUREMENTS_FILE_NAME_PROPERTY = "measurements";
 	private static final String MEASUREMENTS_FILE_NAME_DEFAULT = "measurements.txt";
 
+	/**
+	 * Milliseconds between two status reports.
+	 */
+	public static final String STATUS_INTERVAL_PROPERTY = "status.interval";
+	public static final String STATUS_INTERVAL_DEFAULT = Long.toString(StatusThread.sleeptime);
+
+	/**
+	 * Name of the CSV file in the results dir that the status thread writes
+	 * per-window throughput and latency percentiles to. Empty disables it.
+	 */
+	public static final String STATUS_FILE_PROPERTY = "status.file";
+	public static final String STATUS_FILE_DEFAULT = "intervals.csv";
+
 	private static final String[] REQUIRED_PROPS = { DB_PROPERTY, SCENARIO_PROPERTY, WORKLOAD_PROPERTY };
 
 	public static void usageMessage() {
@@ -380,6 +534,8 @@ public class Client {
 				+ "              \"threadcount\" property using -p");
 		System.out.println("  -target n: attempt to do n operations per second (default: unlimited) - can also\n"
 				+ "             be specified as the \"target\" property using -p");
+		System.out.println("  -p loadmode=constant|poisson: pace operations open-loop at the target throughput and\n"
+				+ "             measure latency from each operation's intended start (default: closed)");
 		System.out.println("  -load:  run the loading phase of the workload");
 		System.out.println("  -t:  run the transactions phase of the workload (default)");
 		System.out.println("  -db dbname: specify the name of the DB to use (default: com.yahoo.ycsb.BasicDB) - \n"
@@ -389,7 +545,10 @@ public class Client {
 		System.out.println("  -p name=value:  specify a property to be passed to the DB and workloads;");
 		System.out.println("                  multiple properties can be specified, and override any");
 		System.out.println("                  values in the propertyfile");
-		System.out.println("  -s:  show status during run (default: no status)");
+		System.out.println("  -s:  show status during run (default: no status); per-window throughput and");
+		System.out.println("       latency percentiles also go to the \"" + STATUS_FILE_PROPERTY + "\" file in the results dir");
+		System.out.println("  -p cachepolicy=cold|warm|cold-per-op-type|every-N:  when to drop caches between");
+		System.out.println("                  operations (default: cold, before every operation)");
 		System.out.println("  -l label:  use label for status (e.g. to label one experiment out of a whole batch)");
 		System.out.println("");
 		System.out.println("Required properties:");
@@ -696,11 +855,6 @@ public class Client {
 		threadcount = Integer.parseInt(props.getProperty(THREAD_COUNT_PROPERTY, "1"));
 		logger.info("Thread Count: " + threadcount);
 
-		if (threadcount != 1) {
-			logger.fatal("More than 1 thread requested, this is not supported. Terminating...");
-			throw new IllegalArgumentException("Too many thread! Bechmark is not multi-threaded yet! Terminating.");
-		}
-
 		dbname = props.getProperty(DB_PROPERTY);
 		logger.info("Using DB: " + dbname);
 		target = Integer.parseInt(props.getProperty("target", "0"));
@@ -712,6 +866,19 @@ public class Client {
 			targetperthreadperms = targetperthread / 1000.0;
 		}
 
+		String loadmode = props.getProperty(LOAD_MODE_PROPERTY, LOAD_MODE_DEFAULT);
+		if (loadmode.compareTo(LOAD_MODE_CLOSED) != 0) {
+			if (loadmode.compareTo(LOAD_MODE_CONSTANT) != 0 && loadmode.compareTo(LOAD_MODE_POISSON) != 0) {
+				logger.fatal("Unknown " + LOAD_MODE_PROPERTY + ": " + loadmode + ". Terminating...");
+				throw new IllegalArgumentException("Unknown load mode: " + loadmode);
+			}
+			if (target <= 0) {
+				logger.fatal("The " + loadmode + " load mode needs a target throughput. Terminating...");
+				throw new IllegalArgumentException("Open-loop load mode without a target throughput");
+			}
+			logger.info("Running open-loop with " + loadmode + " arrivals at " + target + " ops/sec");
+		}
+
 		logger.info("Loading...");
 
 		// show a warning message that creating the workload is taking a while
@@ -811,6 +978,12 @@ public class Client {
 			logger.warn("Failed to flush and close files!", e1);
 		}
 
+		try {
+			scenario.snapshot();
+		} catch (IOException e) {
+			logger.warn("Failed to snapshot the build!", e);
+		}
+
 		logger.info("Total Size of table and meta data stores (MB): "
 				+ db.getSize(scenario.getVersionTableEntry().tableName) / MB);
 
@@ -832,19 +1005,20 @@ public class Client {
 		Vector<Thread> threads = new Vector<Thread>();
 
 		for (int threadid = 0; threadid < threadcount; threadid++) {
-			// did this so that graph printing will work correctly,
-			// this won't work in a multi-threaded environment
-			// try
-			// {
-			// db=DBFactory.newDB(dbname,props);
-			// }
-			// catch (UnknownDBException e)
-			// {
-			// System.out.println("Unknown DB "+dbname);
-			// System.exit(0);
-			// }
+			// the first thread keeps the DB the scenario was set up with, so
+			// that graph printing still works; every other thread gets its
+			// own DB instance, with its own op count and cache policy
+			VersionDB threaddb = db;
+			if (threadid > 0) {
+				try {
+					threaddb = DBFactory.newDB(dbname, props);
+				} catch (UnknownDBException e) {
+					logger.fatal("Failed to load database class!", e);
+					System.exit(-1);
+				}
+			}
 
-			Thread t = new ClientThread(db, dotransactions, workload, threadid, threadcount, props,
+			Thread t = new ClientThread(threaddb, dotransactions, workload, threadid, threadcount, props,
 					targetperthreadperms);
 
 			threads.add(t);
@@ -857,7 +1031,18 @@ public class Client {
 			if (props.getProperty("measurementtype", "").compareTo("timeseries") == 0) {
 				standardstatus = true;
 			}
-			statusthread = new StatusThread(threads, label, standardstatus);
+			long statusinterval = Long.parseLong(props.getProperty(STATUS_INTERVAL_PROPERTY, STATUS_INTERVAL_DEFAULT));
+			String statusfile = props.getProperty(STATUS_FILE_PROPERTY, STATUS_FILE_DEFAULT);
+			PrintWriter intervalout = null;
+			if (!statusfile.isEmpty()) {
+				try {
+					intervalout = new PrintWriter(
+							System.getProperty(LOG_DIR_PROPERTY) + File.separator + statusfile);
+				} catch (IOException e) {
+					logger.error("Could not open status file " + statusfile + ", writing status to the log only", e);
+				}
+			}
+			statusthread = new StatusThread(threads, label, standardstatus, statusinterval, intervalout);
 			statusthread.start();
 		}
 
@@ -897,6 +1082,12 @@ public class Client {
 
 		if (status) {
 			statusthread.interrupt();
+			try {
+				// let the status thread write the last window
+				statusthread.join();
+			} catch (InterruptedException e) {
+				// do nothing
+			}
 		}
 
 		logger.info("Exporting measurements...");
@@ -953,6 +1144,10 @@ public class Client {
 		return output.toString();
 	}
 
+	/**
+	 * Drop the OS page cache and run a full collection. Called by the
+	 * CachePolicy of each client thread.
+	 */
 	public static void dropCaches() {
 		logger.debug(
 				"ClientThread: Workload transaction commencing. Dropping caches and performing a full collection.");
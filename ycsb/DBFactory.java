@@ -48,6 +48,8 @@ public class DBFactory
 	 
 	 ret.setProperties(properties);
 	 ret.setMeasurements(Measurements.getMeasurements());
+	 ret.setCachePolicy(CachePolicy.fromProperties(properties,ret.getMeasurements()));
+	 ret.setResultSink(ResultSink.fromProperties(properties));
 	 return ret;
       }
       
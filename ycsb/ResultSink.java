@@ -0,0 +1,147 @@
+/**                                                                                                                                                                                
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.                                                                                                                             
+ *                                                                                                                                                                                 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you                                                                                                             
+ * may not use this file except in compliance with the License. You                                                                                                                
+ * may obtain a copy of the License at                                                                                                                                             
+ *                                                                                                                                                                                 
+ * http://www.apache.org/licenses/LICENSE-2.0                                                                                                                                      
+ *                                                                                                                                                                                 
+ * Unless required by applicable law or agreed to in writing, software                                                                                                             
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                                                                               
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or                                                                                                                 
+ * implied. See the License for the specific language governing                                                                                                                    
+ * permissions and limitations under the License. See accompanying                                                                                                                 
+ * LICENSE file.                                                                                                                                                                   
+ */
+
+package simpledb.versioned.benchmark.ycsb;
+
+import java.util.Properties;
+
+import simpledb.Field;
+import simpledb.Tuple;
+
+/**
+ * Consumes the result tuples of queries (scans, diffs, QUERY_3 and QUERY_4)
+ * and notes when the first one arrived, so that transactions can report the
+ * time to first tuple next to their total time.
+ * 
+ * Modes, set with the "resultmode" property:
+ * <ul>
+ * <li>count: count the tuples without touching their fields (the default)</li>
+ * <li>checksum: fold every field of every tuple into a checksum, so that
+ * producing the tuples cannot be optimized away</li>
+ * <li>first-N, e.g. first-100: stop after N tuples and close the query, like
+ * a LIMIT</li>
+ * </ul>
+ * 
+ * There is one sink per VersionDB instance, so per client thread, and it is
+ * not thread safe.
+ */
+public class ResultSink {
+
+	public static final String RESULT_MODE_PROPERTY = "resultmode";
+	public static final String COUNT = "count";
+	public static final String CHECKSUM = "checksum";
+	public static final String FIRST_N_PREFIX = "first-";
+	public static final String RESULT_MODE_DEFAULT = COUNT;
+
+	/**
+	 * Suffix of the operation name under which the time to first tuple is
+	 * reported.
+	 */
+	public static final String TTFB_METRIC_SUFFIX = " TTFB";
+
+	/**
+	 * Value of the first row time before any tuple arrived.
+	 */
+	public static final long NO_FIRST_ROW = Long.MIN_VALUE;
+
+	enum Mode {
+		COUNT, CHECKSUM, FIRST_N
+	}
+
+	final Mode mode;
+	final int limit;
+
+	int count = 0;
+	long checksum = 0;
+	long firstRow = NO_FIRST_ROW;
+
+	ResultSink(Mode mode, int limit) {
+		this.mode = mode;
+		this.limit = limit;
+	}
+
+	public static ResultSink fromProperties(Properties props) {
+		String mode = props.getProperty(RESULT_MODE_PROPERTY, RESULT_MODE_DEFAULT);
+		if (mode.compareTo(COUNT) == 0) {
+			return new ResultSink(Mode.COUNT, 0);
+		} else if (mode.compareTo(CHECKSUM) == 0) {
+			return new ResultSink(Mode.CHECKSUM, 0);
+		} else if (mode.startsWith(FIRST_N_PREFIX)) {
+			int limit;
+			try {
+				limit = Integer.parseInt(mode.substring(FIRST_N_PREFIX.length()));
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid " + RESULT_MODE_PROPERTY + ": " + mode);
+			}
+			if (limit <= 0) {
+				throw new IllegalArgumentException("Invalid " + RESULT_MODE_PROPERTY + ": " + mode);
+			}
+			return new ResultSink(Mode.FIRST_N, limit);
+		}
+		throw new IllegalArgumentException("Unknown " + RESULT_MODE_PROPERTY + ": " + mode);
+	}
+
+	/**
+	 * Forget the previous result. Called before each transaction.
+	 */
+	public void reset() {
+		count = 0;
+		firstRow = NO_FIRST_ROW;
+	}
+
+	/**
+	 * Consume one result tuple.
+	 * 
+	 * @return whether the sink wants more tuples
+	 */
+	public boolean accept(Tuple tup) {
+		if (count == 0) {
+			firstRow = System.nanoTime();
+		}
+		count++;
+		if (mode == Mode.CHECKSUM) {
+			int numFields = tup.getTupleDesc().numFields();
+			for (int i = 0; i < numFields; i++) {
+				Field field = tup.getField(i);
+				checksum = 31 * checksum + (field == null ? 0 : field.hashCode());
+			}
+		}
+		return mode != Mode.FIRST_N || count < limit;
+	}
+
+	/**
+	 * Number of tuples consumed since the last reset.
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Checksum over all tuples consumed in checksum mode.
+	 */
+	public long getChecksum() {
+		return checksum;
+	}
+
+	/**
+	 * The System.nanoTime() at which the first tuple since the last reset
+	 * arrived, or NO_FIRST_ROW.
+	 */
+	public long getFirstRow() {
+		return firstRow;
+	}
+}
@@ -42,6 +42,15 @@ public abstract class Scenario implements Cleanupable{
 	public void cleanup() throws DBException
 	{
 	}
+
+	/**
+	 * Called once the table has been prepared for the workload and forced to
+	 * disk, before the workload starts.
+	 * @throws IOException 
+	 */
+	public void snapshot() throws IOException
+	{
+	}
 	
 	
 	public abstract VersionedTableEntry getVersionTableEntry();
@@ -17,6 +17,7 @@
 
 package simpledb.versioned.benchmark.ycsb;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Iterator;
 import java.util.List;
@@ -24,6 +25,8 @@ import java.util.Properties;
 
 import simpledb.DbException;
 import simpledb.Field;
+import simpledb.IntField;
+import simpledb.MutableIntField;
 import simpledb.Predicate;
 import simpledb.TransactionAbortedException;
 import simpledb.TransactionId;
@@ -31,6 +34,7 @@ import simpledb.Tuple;
 import simpledb.TupleDesc;
 import simpledb.versioned.benchmark.ycsb.Scenario.VersionedTableEntry;
 import simpledb.versioned.benchmark.ycsb.measurements.Measurements;
+import simpledb.versioned.benchmark.ycsb.measurements.MetricKey;
 
 /**
  * A layer for accessing a database to be benchmarked. Each thread in the client
@@ -55,6 +59,32 @@ public abstract class VersionDB {
 		}
 	}
 
+	/**
+	 * What to read from a version after checking it out.
+	 */
+	public static enum CheckoutRead {
+		NONE("none"), SCAN("scan"), READ("read");
+
+		private final String name;
+
+		CheckoutRead(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public static CheckoutRead fromName(String name) {
+			for (CheckoutRead read : values()) {
+				if (read.name.equals(name)) {
+					return read;
+				}
+			}
+			throw new IllegalArgumentException("Invalid checkout read: " + name);
+		}
+	}
+
 	public static abstract class Transaction {
 		String subOperationName;
 		String[] branchesOperatedOn;
@@ -85,12 +115,30 @@ public abstract class VersionDB {
 		final VersionDB db;
 		final VersionedTableEntry table;
 		final String operationName;
+		// operation name the time to the first result tuple is reported
+		// under, built on first use if not given
+		String firstRowOperationName;
 		Transaction transaction;
 
 		public TransactionExecutor(VersionDB db, VersionedTableEntry table, String operationName) {
+			this(db, table, operationName, null);
+		}
+
+		/**
+		 * For executors created per operation: firstRowOperationName is
+		 * operationName + ResultSink.TTFB_METRIC_SUFFIX, built once by the
+		 * caller.
+		 */
+		public TransactionExecutor(VersionDB db, VersionedTableEntry table, String operationName,
+				String firstRowOperationName) {
 			this.db = db;
 			this.table = table;
 			this.operationName = operationName;
+			this.firstRowOperationName = firstRowOperationName;
+		}
+
+		public VersionDB getDB() {
+			return db;
 		}
 
 		public void setTransaction(Transaction transaction) {
@@ -98,18 +146,50 @@ public abstract class VersionDB {
 		}
 
 		public void doTransaction() {
-			long st = System.nanoTime();
-			transaction.execute(db, table.tableName);
-			long en = System.nanoTime();
-			String metricString = getMetricString(table.tableName, table.tableType);
-			db.getMeasurements().measure(metricString, (int) ((en - st) / 1000000));
+			ResultSink sink = db.getResultSink();
+			sink.reset();
+			CachePolicy policy = db.getCachePolicy();
+			long st, en;
+			long dropWait = policy.beginMeasured();
+			try {
+				st = System.nanoTime();
+				transaction.execute(db, table.tableName);
+				en = System.nanoTime();
+			} finally {
+				policy.endMeasured();
+			}
+			// in open-loop mode the first transaction of an operation is
+			// charged the time it waited behind its intended start, except
+			// for time spent waiting out cache drops of other threads
+			long intended = db.takeIntendedStart();
+			if (intended != NO_INTENDED_START && intended + dropWait < st) {
+				st = intended + dropWait;
+			}
+			db.getMeasurements().measureNanos(getMetricKey(), en - st);
+			if (sink.getFirstRow() != ResultSink.NO_FIRST_ROW) {
+				db.getMeasurements().measureNanos(getFirstRowMetricKey(), sink.getFirstRow() - st);
+			}
+		}
+
+		public MetricKey getMetricKey() {
+			return db.getMeasurements().getMetricKey(table.tableName, table.tableType, operationName,
+					transaction.subOperationName, db.getLastOpCount());
+		}
+
+		/**
+		 * Key under which the time to the first result tuple is reported.
+		 */
+		public MetricKey getFirstRowMetricKey() {
+			if (firstRowOperationName == null) {
+				firstRowOperationName = operationName + ResultSink.TTFB_METRIC_SUFFIX;
+			}
+			return db.getMeasurements().getMetricKey(table.tableName, table.tableType, firstRowOperationName,
+					transaction.subOperationName, db.getLastOpCount());
 		}
 
 		public String getMetricString(String tableName, String tableType) {
-			String out = "TABLE: " + tableName + "," + "TYPE: " + tableType + "," + "OPERATION: " + operationName + ","
-					+ transaction.getMetricString() + ", OP COUNT: " + db.getLastOpCount();
-			;
-			return out;
+			return MetricKey.buildName(tableName, tableType, operationName, transaction.subOperationName,
+					db.getLastOpCount());
 		}
 
 		@Override
@@ -118,16 +198,143 @@ public abstract class VersionDB {
 		}
 	}
 
+	/**
+	 * A source of tuples to load. next() may hand back a tuple the source
+	 * keeps using; nextInto and nextBatch instead write into tuples the
+	 * caller owns, and once those hold MutableIntFields they do so without
+	 * allocating. Errors of the underlying db are thrown as
+	 * RuntimeExceptions.
+	 */
 	public static interface TupleSrc extends Iterator<Tuple> {
 		public void open(TransactionId tid) throws DbException, TransactionAbortedException;
 
+		/**
+		 * Start over from the first tuple. Optional: sources that cannot
+		 * hand out the same tuples again throw
+		 * UnsupportedOperationException.
+		 */
 		public void rewind();
 
 		public void close();
+
+		/**
+		 * Write the next tuple into tup, or return false if there is none.
+		 */
+		public default boolean nextInto(Tuple tup) {
+			if (!hasNext()) {
+				return false;
+			}
+			copyInto(next(), tup);
+			return true;
+		}
+
+		/**
+		 * Write the next tuples into the tuples of buf, returning how many
+		 * were written; fewer than buf.length only once the source runs out.
+		 */
+		public default int nextBatch(Tuple[] buf) {
+			int n = 0;
+			while (n < buf.length && nextInto(buf[n])) {
+				n++;
+			}
+			return n;
+		}
+
+		/**
+		 * Copy the values of from into to, reusing the MutableIntFields of to.
+		 */
+		public static void copyInto(Tuple from, Tuple to) {
+			int numFields = to.getTupleDesc().numFields();
+			for (int i = 0; i < numFields; i++) {
+				Field field = from.getField(i);
+				if (field instanceof IntField) {
+					setInt(to, i, ((IntField) field).getValue());
+				} else {
+					to.setField(i, field);
+				}
+			}
+			to.setRecordId(null);
+		}
+
+		/**
+		 * Set an int field of tup, in place if it already is a
+		 * MutableIntField.
+		 */
+		public static void setInt(Tuple tup, int i, int value) {
+			Field field = tup.getField(i);
+			if (field instanceof MutableIntField) {
+				((MutableIntField) field).setValue(value);
+			} else {
+				tup.setField(i, new MutableIntField(value));
+			}
+		}
+	}
+
+	/**
+	 * A branch of a table resolved once by getBranchHandle, so that point
+	 * operations on it skip the table and branch name lookups. A handle stays
+	 * usable across branches and merges.
+	 */
+	public static interface BranchHandle {
+		public String getTableName();
+
+		public String getBranchName();
+	}
+
+	/**
+	 * Value of the intended start when the client is not running open-loop.
+	 */
+	public static final long NO_INTENDED_START = Long.MIN_VALUE;
+
+	long _intendedstart = NO_INTENDED_START;
+
+	/**
+	 * Set the System.nanoTime() at which the client scheduled the next
+	 * operation to start. The next transaction executed measures its latency
+	 * from there instead of from its actual start.
+	 */
+	public void setIntendedStart(long intendedstart) {
+		_intendedstart = intendedstart;
+	}
+
+	/**
+	 * Return the intended start set by the client, or NO_INTENDED_START, and
+	 * clear it.
+	 */
+	public long takeIntendedStart() {
+		long intendedstart = _intendedstart;
+		_intendedstart = NO_INTENDED_START;
+		return intendedstart;
 	}
 
 	Measurements _measurements;
 
+	CachePolicy _cachepolicy;
+
+	ResultSink _resultsink;
+
+	public void setCachePolicy(CachePolicy cachepolicy) {
+		_cachepolicy = cachepolicy;
+	}
+
+	/**
+	 * Return the cache policy of the client thread using this DB.
+	 */
+	public CachePolicy getCachePolicy() {
+		return _cachepolicy;
+	}
+
+	public void setResultSink(ResultSink resultsink) {
+		_resultsink = resultsink;
+	}
+
+	/**
+	 * Return the sink that consumes query results of this DB.
+	 */
+	public ResultSink getResultSink() {
+		return _resultsink;
+	}
+
 	public void setMeasurements(Measurements measurements) {
 		_measurements = measurements;
 	}
@@ -197,6 +404,42 @@ public abstract class VersionDB {
 
 	public abstract void delete(TransactionId tid, String tableName, String branchName, Tuple tup);
 
+	public abstract BranchHandle getBranchHandle(String tableName, String branchName);
+
+	public abstract void insert(TransactionId tid, BranchHandle branch, Tuple tup);
+
+	public abstract void update(TransactionId tid, BranchHandle branch, Tuple tup);
+
+	public abstract void read(TransactionId tid, BranchHandle branch, Field primaryKey);
+
+	public abstract void delete(TransactionId tid, BranchHandle branch, Tuple tup);
+
+	/**
+	 * Insert all of the given tuples into a branch as one operation. The last
+	 * op count is the total over the batch.
+	 */
+	public abstract void insertBatch(TransactionId tid, String tableName, String branchName, Tuple[] tups);
+
+	/**
+	 * Update all of the given tuples in a branch as one operation. The last op
+	 * count is the total over the batch.
+	 */
+	public abstract void updateBatch(TransactionId tid, String tableName, String branchName, Tuple[] tups);
+
+	/**
+	 * Delete all of the given tuples from a branch as one operation. The last
+	 * op count is the total over the batch.
+	 */
+	public abstract void deleteBatch(TransactionId tid, String tableName, String branchName, Tuple[] tups);
+
+	/**
+	 * Insert all tuples of the source into a branch, e.g. the root branch of a
+	 * new table, with the branch resolved once. The tuples come with their
+	 * primary keys set, and a tuple may be reused by the source once the next
+	 * one is pulled. The last op count is the number of tuples inserted.
+	 */
+	public abstract void insertAll(TransactionId tid, String tableName, String branchName, TupleSrc tuples);
+
 	public abstract void createVersionedTable(TransactionId tid, String tableName, TupleDesc desc, String type,
 			MergeProc mergeProc);
 
@@ -214,6 +457,19 @@ public abstract class VersionDB {
 	 */
 	public abstract void randomCheckout(TransactionId tid, String tableName);
 
+	/**
+	 * The number of commits of a table so far.
+	 */
+	public abstract int getNumCommits(String tableName);
+
+	/**
+	 * Check out the commit made age commits before the latest one, 0 being the
+	 * latest, and then scan the checked-out version or read primaryKey from
+	 * it. The last op count is the number of tuples read, or 1 for none.
+	 */
+	public abstract void checkout(TransactionId tid, String tableName, int age, CheckoutRead read,
+			Field primaryKey);
+
 	public abstract TupleSrc getNewTupleSrc(TupleDesc td, int numTuples);
 
 	public abstract TupleSrc getTupleSrcFromFile(String fileName, TupleDesc td);
@@ -223,6 +479,19 @@ public abstract class VersionDB {
 
 	public abstract void copyVersionedTable(TransactionId tid, String tableName, String newTableName);
 
+	/**
+	 * Copy the files of a table and its branch/commit metadata into dir. The
+	 * table should have been forced to disk first.
+	 */
+	public abstract void saveSnapshot(String tableName, File dir) throws IOException;
+
+	/**
+	 * Recreate a table from a snapshot written by saveSnapshot, in place of
+	 * createVersionedTable and the build phase.
+	 */
+	public abstract void restoreSnapshot(TransactionId tid, String tableName, TupleDesc desc, String type,
+			MergeProc mergeProc, File dir) throws IOException;
+
 	public abstract String getVersionMetaDataStringRep(String tableName);
 
 	public abstract void setPageSize(int pageSize);
@@ -84,6 +84,15 @@ public abstract class Workload implements Cleanupable
       public abstract boolean doTransaction(VersionDB db, Object threadstate);
       
       
+      /**
+       * Return the name of the operation the next call to doTransaction() will run, or null if the
+       * workload cannot tell. Used by cache policies that depend on the type of operation.
+       */
+      public String getNextOperationName(Object threadstate)
+      {
+	 return null;
+      }
+
       /**
        * Allows scheduling a request to stop the workload.
        */
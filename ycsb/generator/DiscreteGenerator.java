@@ -17,16 +17,49 @@
 
 package simpledb.versioned.benchmark.ycsb.generator;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
-import java.util.Vector;
 
 import simpledb.versioned.benchmark.ycsb.WorkloadException;
 
 /**
  * Generates a distribution by choosing from a discrete set of values.
+ *
+ * The normalized weights are computed when values are added, so all values
+ * should be added before the first draw and a draw takes no lock. Every draw
+ * takes one nextDouble() of the Random. The CDF sampler (the default) walks
+ * the weights in the order added, which gives the same values as before for
+ * the same seed. The alias sampler looks a draw up in a Walker/Vose alias
+ * table in constant time, but maps the same random numbers to different
+ * values.
  */
 public class DiscreteGenerator extends Generator {
-	class Pair {
+	public static enum Sampler {
+		CDF("cdf"), ALIAS("alias");
+
+		private final String name;
+
+		Sampler(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public static Sampler fromName(String name) {
+			for (Sampler sampler : values()) {
+				if (sampler.name.equals(name)) {
+					return sampler;
+				}
+			}
+			throw new IllegalArgumentException("Invalid discrete sampler: " + name);
+		}
+	}
+
+	class Pair implements Serializable {
 		public double _weight;
 		public String _value;
 
@@ -36,14 +69,33 @@ public class DiscreteGenerator extends Generator {
 		}
 	}
 
-	Vector<Pair> _values;
+	final List<Pair> _values;
 	String _lastvalue;
 	Random _rand;
+	final Sampler _sampler;
+
+	/**
+	 * Weights divided by their sum, in the order added.
+	 */
+	double[] _probabilities;
+
+	/**
+	 * Alias table: slot i keeps i with probability _aliasprobabilities[i] and
+	 * is _aliases[i] otherwise.
+	 */
+	double[] _aliasprobabilities;
+	int[] _aliases;
 
 	public DiscreteGenerator(Random rand) {
-		_values = new Vector<Pair>();
+		this(rand, Sampler.CDF);
+	}
+
+	public DiscreteGenerator(Random rand, Sampler sampler) {
+		_values = new ArrayList<Pair>();
 		_lastvalue = null;
 		_rand = rand;
+		_sampler = sampler;
+		_probabilities = new double[0];
 	}
 
 	/**
@@ -51,27 +103,32 @@ public class DiscreteGenerator extends Generator {
 	 */
 	@Override
 	public String nextString() {
-		double sum = 0;
+		return _values.get(nextIndex())._value;
+	}
 
-		for (Pair p : _values) {
-			sum += p._weight;
+	/**
+	 * The position of the next value in the order the values were added, so
+	 * callers can compare ints rather than strings.
+	 */
+	public int nextIndex() {
+		int n = _probabilities.length;
+		if (n == 0) {
+			throw new IllegalStateException("No values to choose from");
 		}
-
 		double val = _rand.nextDouble();
-
-		for (Pair p : _values) {
-			if (val < p._weight / sum) {
-				return p._value;
+		if (_sampler == Sampler.ALIAS) {
+			double scaled = val * n;
+			int slot = Math.min((int) scaled, n - 1);
+			return scaled - slot < _aliasprobabilities[slot] ? slot : _aliases[slot];
+		}
+		for (int i = 0; i < n; i++) {
+			if (val < _probabilities[i]) {
+				return i;
 			}
-
-			val -= p._weight / sum;
+			val -= _probabilities[i];
 		}
-
-		// should never get here.
-		System.out.println("oops. should not get here.");
-		System.exit(0);
-
-		return null;
+		// rounding can leave val just past the last weight
+		return n - 1;
 	}
 
 	/**
@@ -101,8 +158,69 @@ public class DiscreteGenerator extends Generator {
 		return _lastvalue;
 	}
 
-	public void addValue(double weight, String value) {
+	/**
+	 * Add a value, returning the index nextIndex() returns for it.
+	 */
+	public int addValue(double weight, String value) {
 		_values.add(new Pair(weight, value));
+		buildTables();
+		return _values.size() - 1;
+	}
+
+	private void buildTables() {
+		int n = _values.size();
+		double sum = 0;
+		for (Pair p : _values) {
+			sum += p._weight;
+		}
+		double[] probabilities = new double[n];
+		for (int i = 0; i < n; i++) {
+			probabilities[i] = _values.get(i)._weight / sum;
+		}
+
+		// Vose: pair each slot under the average with one over it
+		double[] aliasprobabilities = new double[n];
+		int[] aliases = new int[n];
+		double[] scaled = new double[n];
+		int[] small = new int[n];
+		int[] large = new int[n];
+		int numsmall = 0;
+		int numlarge = 0;
+		for (int i = 0; i < n; i++) {
+			scaled[i] = probabilities[i] * n;
+			if (scaled[i] < 1) {
+				small[numsmall++] = i;
+			} else {
+				large[numlarge++] = i;
+			}
+		}
+		while (numsmall > 0 && numlarge > 0) {
+			int less = small[--numsmall];
+			int more = large[--numlarge];
+			aliasprobabilities[less] = scaled[less];
+			aliases[less] = more;
+			scaled[more] = scaled[more] + scaled[less] - 1;
+			if (scaled[more] < 1) {
+				small[numsmall++] = more;
+			} else {
+				large[numlarge++] = more;
+			}
+		}
+		// what is left is full up to rounding
+		while (numlarge > 0) {
+			int slot = large[--numlarge];
+			aliasprobabilities[slot] = 1;
+			aliases[slot] = slot;
+		}
+		while (numsmall > 0) {
+			int slot = small[--numsmall];
+			aliasprobabilities[slot] = 1;
+			aliases[slot] = slot;
+		}
+
+		_aliasprobabilities = aliasprobabilities;
+		_aliases = aliases;
+		_probabilities = probabilities;
 	}
 
 }
@@ -47,6 +47,11 @@ public class ExponentialGenerator extends IntegerGenerator
 	 */
 	double _gamma;	
 
+	/**
+	 * Source of the draws, or null for the global Utils.random().
+	 */
+	Random _rand;
+
 	/******************************* Constructors **************************************/
 
 	/**
@@ -57,6 +62,16 @@ public class ExponentialGenerator extends IntegerGenerator
 	{
 		_gamma = 1.0/mean;
 	}
+
+	/**
+	 * Create an exponential generator with a mean arrival rate of
+	 * gamma that draws from rand.
+	 */
+	public ExponentialGenerator(double mean, Random rand)
+	{
+		this(mean);
+		_rand = rand;
+	}
 	public ExponentialGenerator(double percentile, double range)
 	{
 		_gamma = -Math.log(1.0-percentile/100.0) / range;  //1.0/mean;
@@ -84,7 +99,7 @@ public class ExponentialGenerator extends IntegerGenerator
 	 */
 	public long nextLong()
 	{
-		return (long) (-Math.log(Utils.random().nextDouble()) / _gamma);
+		return (long) (-Math.log((_rand != null ? _rand : Utils.random()).nextDouble()) / _gamma);
 	}
 
 	@Override
@@ -17,10 +17,12 @@
 
 package simpledb.versioned.benchmark.ycsb.generator;
 
+import java.io.Serializable;
+
 /**
  * An expression that generates a sequence of string values, following some distribution (Uniform, Zipfian, Sequential, etc.)
  */
-public abstract class Generator 
+public abstract class Generator implements Serializable
 {
 	/**
 	 * Generate the next string in the distribution.
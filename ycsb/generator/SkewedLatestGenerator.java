@@ -17,6 +17,8 @@
 
 package simpledb.versioned.benchmark.ycsb.generator;
 
+import java.util.Random;
+
 /**
  * Generate a popularity distribution of items, skewed to favor recent items significantly more than older items.
  */
@@ -26,9 +28,17 @@ public class SkewedLatestGenerator extends IntegerGenerator
 	ZipfianGenerator _zipfian;
 
 	public SkewedLatestGenerator(CounterGenerator basis)
+	{
+		this(basis,null);
+	}
+
+	/**
+	 * @param rand The source of the draws, or null for the global Utils.random().
+	 */
+	public SkewedLatestGenerator(CounterGenerator basis, Random rand)
 	{
 		_basis=basis;
-		_zipfian=new ZipfianGenerator(_basis.lastInt());
+		_zipfian=new ZipfianGenerator(_basis.lastInt(),rand);
 		nextInt();
 	}
 
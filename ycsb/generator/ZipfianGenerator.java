@@ -80,6 +80,11 @@ public class ZipfianGenerator extends IntegerGenerator
 	 */
 	boolean allowitemcountdecrease=false;
 
+	/**
+	 * Source of the draws, or null for the global Utils.random().
+	 */
+	Random _rand;
+
 	/******************************* Constructors **************************************/
 
 	/**
@@ -91,6 +96,16 @@ public class ZipfianGenerator extends IntegerGenerator
 		this(0,_items-1);
 	}
 
+	/**
+	 * Create a zipfian generator for the specified number of items that draws from rand.
+	 * @param _items The number of items in the distribution.
+	 * @param rand The source of the draws.
+	 */
+	public ZipfianGenerator(long _items, Random rand)
+	{
+		this(0,_items-1,ZIPFIAN_CONSTANT,zetastatic(_items,ZIPFIAN_CONSTANT),rand);
+	}
+
 	/**
 	 * Create a zipfian generator for items between min and max.
 	 * @param _min The smallest integer to generate in the sequence.
@@ -133,6 +148,22 @@ public class ZipfianGenerator extends IntegerGenerator
 	 */
 	public ZipfianGenerator(long min, long max, double _zipfianconstant, double _zetan)
 	{
+		this(min,max,_zipfianconstant,_zetan,null);
+	}
+
+	/**
+	 * Create a zipfian generator for items between min and max (inclusive) for the specified zipfian constant, using the precomputed value of zeta
+	 * and drawing from rand.
+	 * 
+	 * @param min The smallest integer to generate in the sequence.
+	 * @param max The largest integer to generate in the sequence.
+	 * @param _zipfianconstant The zipfian constant to use.
+	 * @param _zetan The precomputed zeta constant.
+	 * @param rand The source of the draws, or null for the global Utils.random().
+	 */
+	public ZipfianGenerator(long min, long max, double _zipfianconstant, double _zetan, Random rand)
+	{
+		_rand=rand;
 
 		items=max-min+1;
 		base=min;
@@ -273,7 +304,7 @@ public class ZipfianGenerator extends IntegerGenerator
 			}
 		}
 
-		double u=Utils.random().nextDouble();
+		double u=(_rand!=null ? _rand : Utils.random()).nextDouble();
 		double uz=u*zetan;
 
 		if (uz<1.0)
@@ -0,0 +1,190 @@
+/**                                                                                                                                                                                
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.                                                                                                                             
+ *                                                                                                                                                                                 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you                                                                                                             
+ * may not use this file except in compliance with the License. You                                                                                                                
+ * may obtain a copy of the License at                                                                                                                                             
+ *                                                                                                                                                                                 
+ * http://www.apache.org/licenses/LICENSE-2.0                                                                                                                                      
+ *                                                                                                                                                                                 
+ * Unless required by applicable law or agreed to in writing, software                                                                                                             
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                                                                               
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or                                                                                                                 
+ * implied. See the License for the specific language governing                                                                                                                    
+ * permissions and limitations under the License. See accompanying                                                                                                                 
+ * LICENSE file.                                                                                                                                                                   
+ */
+
+package simpledb.versioned.benchmark.ycsb.measurements;
+
+
+/**
+ * A fixed size, log-linear bucketed histogram of non-negative long values, in the style of HdrHistogram.
+ * Values below 2^precision get a bucket each; above that every power of two range is split into
+ * 2^(precision-1) equal buckets, so any recorded value is off by at most 1/2^(precision-1) of itself and
+ * memory does not grow with the number or range of values. Values at or above 2^MAX_MAGNITUDE are counted
+ * in the last bucket.
+ * 
+ * Not thread safe. The counts array is never reallocated though, so another thread may read it while the
+ * owner is recording and diff it against an earlier copy.
+ */
+public class LogLinearHistogram
+{
+	static final int MAX_MAGNITUDE=40;
+
+	static final long MAX_VALUE=(1L<<MAX_MAGNITUDE)-1;
+
+	final int _subbucketbits;
+	final int _subbucketcount;
+	final int _subbuckethalfcount;
+	final long[] _counts;
+
+	public LogLinearHistogram(int precision)
+	{
+		if ( (precision<2) || (precision>=MAX_MAGNITUDE) )
+		{
+			throw new IllegalArgumentException("Invalid histogram precision: "+precision);
+		}
+		_subbucketbits=precision;
+		_subbucketcount=1<<_subbucketbits;
+		_subbuckethalfcount=_subbucketcount/2;
+		_counts=new long[bucketIndex(MAX_VALUE)+1];
+	}
+
+	/**
+	 * Index of the bucket that holds value. The first 2^precision values map to themselves, larger values
+	 * are bucketed by their magnitude and the top precision-1 bits below their leading bit.
+	 */
+	int bucketIndex(long value)
+	{
+		if (value<_subbucketcount)
+		{
+			return (int)value;
+		}
+		int shift=(63-Long.numberOfLeadingZeros(value))-(_subbucketbits-1);
+		return _subbucketcount+(shift-1)*_subbuckethalfcount+(int)((value>>shift)-_subbuckethalfcount);
+	}
+
+	/**
+	 * Largest value that maps to the bucket at index.
+	 */
+	long highestEquivalentValue(int index)
+	{
+		if (index<_subbucketcount)
+		{
+			return index;
+		}
+		int shift=(index-_subbucketcount)/_subbuckethalfcount+1;
+		long subbucket=(index-_subbucketcount)%_subbuckethalfcount+_subbuckethalfcount;
+		return ((subbucket+1)<<shift)-1;
+	}
+
+	public void record(long value)
+	{
+		if (value<0)
+		{
+			value=0;
+		}
+		_counts[bucketIndex(Math.min(value,MAX_VALUE))]++;
+	}
+
+	public int getPrecision()
+	{
+		return _subbucketbits;
+	}
+
+	/**
+	 * Number of values recorded.
+	 */
+	public long getCount()
+	{
+		long count=0;
+		for (long c : _counts)
+		{
+			count+=c;
+		}
+		return count;
+	}
+
+	/**
+	 * Value at or below which the given percentage of the recorded values fall, reported as the highest
+	 * value of its bucket. Returns -1 if nothing was recorded.
+	 */
+	public long getValueAtPercentile(double percentile)
+	{
+		long count=getCount();
+		if (count==0)
+		{
+			return -1;
+		}
+		long target=Math.max(1,(long)Math.ceil(count*percentile/100.0));
+		long opcounter=0;
+		for (int i=0; i<_counts.length; i++)
+		{
+			opcounter+=_counts[i];
+			if (opcounter>=target)
+			{
+				return highestEquivalentValue(i);
+			}
+		}
+		return MAX_VALUE;
+	}
+
+	/**
+	 * Add the counts of another histogram of the same precision to this one.
+	 */
+	public void add(LogLinearHistogram other)
+	{
+		checkPrecision(other);
+		for (int i=0; i<_counts.length; i++)
+		{
+			_counts[i]+=other._counts[i];
+		}
+	}
+
+	/**
+	 * Set this histogram to the counts recorded in current since it last looked like previous, and then
+	 * copy current into previous. The counts of current are read once each, so current may be recorded
+	 * into concurrently; anything missed shows up in the next interval.
+	 */
+	public void setToIntervalAndAdvance(LogLinearHistogram current, LogLinearHistogram previous)
+	{
+		checkPrecision(current);
+		checkPrecision(previous);
+		for (int i=0; i<_counts.length; i++)
+		{
+			long now=current._counts[i];
+			_counts[i]=now-previous._counts[i];
+			previous._counts[i]=now;
+		}
+	}
+
+	public void reset()
+	{
+		for (int i=0; i<_counts.length; i++)
+		{
+			_counts[i]=0;
+		}
+	}
+
+	/**
+	 * Number of buckets, for iterating over the recorded values.
+	 */
+	int getBucketCount()
+	{
+		return _counts.length;
+	}
+
+	long getCountAt(int index)
+	{
+		return _counts[index];
+	}
+
+	private void checkPrecision(LogLinearHistogram other)
+	{
+		if (other._subbucketbits!=_subbucketbits)
+		{
+			throw new IllegalArgumentException("Cannot combine histograms of different precision!");
+		}
+	}
+}
@@ -18,9 +18,19 @@
 package simpledb.versioned.benchmark.ycsb.measurements;
 
 import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import simpledb.versioned.benchmark.ycsb.exporter.MeasurementsExporter;
 
@@ -37,6 +47,13 @@ public class Measurements
 
 	private static final String MEASUREMENT_TYPE_DEFAULT = "timeseries";//"histogram";
 
+	/**
+	 * Number of bits of sub-bucket resolution of the interval histograms, see LogLinearHistogram.
+	 */
+	public static final String INTERVAL_PRECISION = "interval.precision";
+
+	public static final String INTERVAL_PRECISION_DEFAULT = "7";
+
 	static Measurements singleton=null;
 	
 	static Properties measurementproperties=null;
@@ -58,10 +75,37 @@ public class Measurements
 		return singleton;
 	}
 
-	SortedMap<String,OneMeasurement> data;
+	/**
+	 * One map of recorders per client thread, so that measure() never contends with another thread.
+	 * The per-thread recorders are only combined when the measurements are exported or summarized.
+	 */
+	final List<Map<String,OneMeasurement>> threaddata;
+	final ThreadLocal<LocalRecorders> localdata;
+	final MetricKey.Registry metrickeys;
+
+	/**
+	 * Per-thread cumulative histograms of latencies in microseconds, only kept once enableIntervals()
+	 * was called. Each is only written by its thread; getIntervals() diffs them against the copies in
+	 * intervalprevious, so neither side ever takes a lock or swaps buffers under the recording thread.
+	 */
+	final List<Map<String,LogLinearHistogram>> threadintervals;
+	final IdentityHashMap<LogLinearHistogram,LogLinearHistogram> intervalprevious;
+	volatile boolean intervals=false;
+	int intervalprecision;
 	boolean histogram=false;
+	boolean hdrhistogram=false;
 	boolean list=true;
 
+	/**
+	 * Totals seen by the previous call to getSummary(), used to report windowed averages.
+	 */
+	Map<String,long[]> lastsummary;
+
+	/**
+	 * Names of the metrics reported with measureValue(), which are not latencies.
+	 */
+	final Set<String> valuenames;
+
 	private Properties _props;
 	
       /**
@@ -69,15 +113,36 @@ public class Measurements
        */
 	public Measurements(Properties props)
 	{
-		data=new TreeMap<String,OneMeasurement>();
+		threaddata=new CopyOnWriteArrayList<Map<String,OneMeasurement>>();
+		localdata=new ThreadLocal<LocalRecorders>()
+		{
+			@Override
+			protected LocalRecorders initialValue()
+			{
+				LocalRecorders local=new LocalRecorders();
+				threaddata.add(local.byname);
+				threadintervals.add(local.intervals);
+				return local;
+			}
+		};
+		metrickeys=new MetricKey.Registry();
+		threadintervals=new CopyOnWriteArrayList<Map<String,LogLinearHistogram>>();
+		intervalprevious=new IdentityHashMap<LogLinearHistogram,LogLinearHistogram>();
+		lastsummary=new HashMap<String,long[]>();
+		valuenames=ConcurrentHashMap.newKeySet();
 		
 		_props=props;
+		intervalprecision=Integer.parseInt(_props.getProperty(INTERVAL_PRECISION, INTERVAL_PRECISION_DEFAULT));
 		
 		String measurementProperty = _props.getProperty(MEASUREMENT_TYPE, MEASUREMENT_TYPE_DEFAULT);
 		if (measurementProperty.compareTo("histogram")==0)
 		{
 			histogram=true;
 		}
+		else if (measurementProperty.compareTo("hdrhistogram")==0)
+		{
+			hdrhistogram=true;
+		}
 		else if (measurementProperty.compareTo("list")==0)
 		{
 			list=true;
@@ -86,10 +151,19 @@ public class Measurements
 	
 	OneMeasurement constructOneMeasurement(String name)
 	{
-		if (histogram)
+		if (valuenames.contains(name))
+		{
+			//keeps the values as they are, the other types take them for milliseconds
+			return new OneMeasurementList(name,_props);
+		}
+		else if (histogram)
 		{
 			return new OneMeasurementHistogram(name,_props);
 		}
+		else if (hdrhistogram)
+		{
+			return new OneMeasurementHdrHistogram(name,_props);
+		}
 		else if (list) 
 		{
 			return new OneMeasurementList(name,_props);
@@ -100,24 +174,179 @@ public class Measurements
 		}
 	}
 
+	/**
+	 * The recorders of one client thread, by metric name and by metric key id.
+	 */
+	static class LocalRecorders
+	{
+		final Map<String,OneMeasurement> byname=new ConcurrentHashMap<String,OneMeasurement>();
+		OneMeasurement[] bykey=new OneMeasurement[64];
+		final Map<String,LogLinearHistogram> intervals=new ConcurrentHashMap<String,LogLinearHistogram>();
+		LogLinearHistogram[] intervalbykey=new LogLinearHistogram[64];
+	}
+
+	/**
+	 * Start keeping the per-thread interval histograms read by getIntervals(). Values measured before
+	 * this call are not part of any interval.
+	 */
+	public void enableIntervals()
+	{
+		intervals=true;
+	}
+
+	LogLinearHistogram getLocalInterval(LocalRecorders local, String operation)
+	{
+		LogLinearHistogram h=local.intervals.get(operation);
+		if (h==null)
+		{
+			h=new LogLinearHistogram(intervalprecision);
+			local.intervals.put(operation,h);
+		}
+		return h;
+	}
+
+	LogLinearHistogram getLocalInterval(LocalRecorders local, MetricKey key)
+	{
+		if (key._id>=local.intervalbykey.length)
+		{
+			local.intervalbykey=Arrays.copyOf(local.intervalbykey,Math.max(key._id+1,2*local.intervalbykey.length));
+		}
+		LogLinearHistogram h=local.intervalbykey[key._id];
+		if (h==null)
+		{
+			h=getLocalInterval(local,key.getName());
+			local.intervalbykey[key._id]=h;
+		}
+		return h;
+	}
+
+	/**
+	 * Return the calling thread's recorder for a metric, creating it on first use.
+	 */
+	OneMeasurement getLocalMeasurement(String operation)
+	{
+		return getLocalMeasurement(localdata.get(),operation);
+	}
+
+	OneMeasurement getLocalMeasurement(LocalRecorders local, String operation)
+	{
+		OneMeasurement m=local.byname.get(operation);
+		if (m==null)
+		{
+			m=constructOneMeasurement(operation);
+			local.byname.put(operation,m);
+		}
+		return m;
+	}
+
+	/**
+	 * Return the calling thread's recorder for an interned metric key, creating it on first use.
+	 */
+	OneMeasurement getLocalMeasurement(MetricKey key)
+	{
+		return getLocalMeasurement(localdata.get(),key);
+	}
+
+	OneMeasurement getLocalMeasurement(LocalRecorders local, MetricKey key)
+	{
+		if (key._id>=local.bykey.length)
+		{
+			local.bykey=Arrays.copyOf(local.bykey,Math.max(key._id+1,2*local.bykey.length));
+		}
+		OneMeasurement m=local.bykey[key._id];
+		if (m==null)
+		{
+			m=getLocalMeasurement(local,key.getName());
+			local.bykey[key._id]=m;
+		}
+		return m;
+	}
+
+	/**
+	 * Return the interned key for a transaction metric. Only the first call for a given combination
+	 * builds the metric name.
+	 */
+	public MetricKey getMetricKey(String tableName, String tableType, String operation, String subOperation, int opCount)
+	{
+		return metrickeys.get(tableName,tableType,operation,subOperation,opCount);
+	}
+
+	/**
+	 * Return the interned key for a metric that is not a latency, e.g. a count or a ratio, to report
+	 * with measureValue().
+	 */
+	public MetricKey getValueMetricKey(String name)
+	{
+		valuenames.add(name);
+		return metrickeys.get(name);
+	}
+
+	/**
+	 * Report a value that is not a latency. It is kept as it is, and left out of the latency intervals
+	 * and of the summary.
+	 */
+	public void measureValue(MetricKey key, int value)
+	{
+		getLocalMeasurement(localdata.get(),key).measure(value);
+	}
+
       /**
        * Report a single value of a single metric. E.g. for read latency, operation="READ" and latency is the measured value.
        */
-	public synchronized void measure(String operation, int latency)
+	public void measure(String operation, int latency)
 	{
-		if (!data.containsKey(operation))
+		try
 		{
-			synchronized(this)
+			LocalRecorders local=localdata.get();
+			getLocalMeasurement(local,operation).measure(latency);
+			if (intervals)
 			{
-				if (!data.containsKey(operation))
-				{
-					data.put(operation,constructOneMeasurement(operation));
-				}
+				getLocalInterval(local,operation).record(latency*1000L);
 			}
 		}
+		catch (java.lang.ArrayIndexOutOfBoundsException e)
+		{
+			System.out.println("ERROR: java.lang.ArrayIndexOutOfBoundsException - ignoring and continuing");
+			e.printStackTrace();
+			e.printStackTrace(System.out);
+		}
+	}
+
+      /**
+       * Report a single latency in nanoseconds. Measurement types that keep milliseconds truncate it.
+       */
+	public void measureNanos(String operation, long nanos)
+	{
 		try
 		{
-			data.get(operation).measure(latency);
+			LocalRecorders local=localdata.get();
+			getLocalMeasurement(local,operation).measureNanos(nanos);
+			if (intervals)
+			{
+				getLocalInterval(local,operation).record(nanos/1000);
+			}
+		}
+		catch (java.lang.ArrayIndexOutOfBoundsException e)
+		{
+			System.out.println("ERROR: java.lang.ArrayIndexOutOfBoundsException - ignoring and continuing");
+			e.printStackTrace();
+			e.printStackTrace(System.out);
+		}
+	}
+
+      /**
+       * Report a single latency in nanoseconds against an interned metric key.
+       */
+	public void measureNanos(MetricKey key, long nanos)
+	{
+		try
+		{
+			LocalRecorders local=localdata.get();
+			getLocalMeasurement(local,key).measureNanos(nanos);
+			if (intervals)
+			{
+				getLocalInterval(local,key).record(nanos/1000);
+			}
 		}
 		catch (java.lang.ArrayIndexOutOfBoundsException e)
 		{
@@ -132,17 +361,66 @@ public class Measurements
        */
 	public void reportReturnCode(String operation, int code)
 	{
-		if (!data.containsKey(operation))
+		getLocalMeasurement(operation).reportReturnCode(code);
+	}
+
+	/**
+	 * Return the latencies, in microseconds, measured since the previous call, by metric. Metrics that
+	 * saw no values in the interval are left out. Safe to call while the client threads are running;
+	 * a value recorded while the interval is being read is reported in this or the next interval.
+	 */
+	public synchronized SortedMap<String,LogLinearHistogram> getIntervals()
+	{
+		SortedMap<String,LogLinearHistogram> window=new TreeMap<String,LogLinearHistogram>();
+		LogLinearHistogram delta=new LogLinearHistogram(intervalprecision);
+		for (Map<String,LogLinearHistogram> local : threadintervals)
+		{
+			for (Entry<String,LogLinearHistogram> e : local.entrySet())
+			{
+				LogLinearHistogram previous=intervalprevious.get(e.getValue());
+				if (previous==null)
+				{
+					previous=new LogLinearHistogram(intervalprecision);
+					intervalprevious.put(e.getValue(),previous);
+				}
+				delta.setToIntervalAndAdvance(e.getValue(),previous);
+				if (delta.getCount()==0)
+				{
+					continue;
+				}
+				LogLinearHistogram merged=window.get(e.getKey());
+				if (merged==null)
+				{
+					merged=new LogLinearHistogram(intervalprecision);
+					window.put(e.getKey(),merged);
+				}
+				merged.add(delta);
+			}
+		}
+		return window;
+	}
+
+	/**
+	 * Combine the per-thread recorders into one measurement per metric. Only safe once the client
+	 * threads have stopped recording.
+	 */
+	SortedMap<String,OneMeasurement> collect()
+	{
+		SortedMap<String,OneMeasurement> data=new TreeMap<String,OneMeasurement>();
+		for (Map<String,OneMeasurement> local : threaddata)
 		{
-			synchronized(this)
+			for (OneMeasurement m : local.values())
 			{
-				if (!data.containsKey(operation))
+				OneMeasurement merged=data.get(m.getName());
+				if (merged==null)
 				{
-					data.put(operation,constructOneMeasurement(operation));
+					merged=constructOneMeasurement(m.getName());
+					data.put(m.getName(),merged);
 				}
+				merged.merge(m);
 			}
 		}
-		data.get(operation).reportReturnCode(code);
+		return data;
 	}
 	
   /**
@@ -153,21 +431,62 @@ public class Measurements
    */
   public void exportMeasurements(MeasurementsExporter exporter) throws IOException
   {
-    for (OneMeasurement measurement : data.values())
+    for (OneMeasurement measurement : collect().values())
     {
       measurement.exportMeasurements(exporter);
     }
   }
 	
       /**
-       * Return a one line summary of the measurements.
+       * Return a one line summary of the measurements. Only the operation counts and latency sums of the
+       * per-thread recorders are read, so this is safe to call while the client threads are running.
        */
-	public String getSummary()
+	public synchronized String getSummary()
 	{
+		SortedMap<String,long[]> totals=new TreeMap<String,long[]>();
+		for (Map<String,OneMeasurement> local : threaddata)
+		{
+			for (OneMeasurement m : local.values())
+			{
+				if (valuenames.contains(m.getName()))
+				{
+					continue;
+				}
+				long[] total=totals.get(m.getName());
+				if (total==null)
+				{
+					total=new long[2];
+					totals.put(m.getName(),total);
+				}
+				total[0]+=m.getOperations();
+				total[1]+=m.getTotalLatency();
+			}
+		}
+
+		//the time series summary only covers the window since the last call
+		boolean windowed=!histogram && !hdrhistogram && !list;
+		String unit=hdrhistogram ? "us" : "ms";
+		DecimalFormat d = new DecimalFormat("#.##");
 		String ret="";
-		for (OneMeasurement m : data.values())
+		for (Entry<String,long[]> e : totals.entrySet())
 		{
-			ret+=m.getSummary()+" ";
+			long operations=e.getValue()[0];
+			long totallatency=e.getValue()[1];
+			if (windowed)
+			{
+				long[] last=lastsummary.put(e.getKey(),e.getValue());
+				if (last!=null)
+				{
+					operations-=last[0];
+					totallatency-=last[1];
+				}
+			}
+			if (operations==0)
+			{
+				continue;
+			}
+			double report=((double)totallatency)/((double)operations);
+			ret+="["+e.getKey()+" AverageLatency("+unit+")="+d.format(report)+"] ";
 		}
 		
 		return ret;
@@ -0,0 +1,207 @@
+/**                                                                                                                                                                                
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.                                                                                                                             
+ *                                                                                                                                                                                 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you                                                                                                             
+ * may not use this file except in compliance with the License. You                                                                                                                
+ * may obtain a copy of the License at                                                                                                                                             
+ *                                                                                                                                                                                 
+ * http://www.apache.org/licenses/LICENSE-2.0                                                                                                                                      
+ *                                                                                                                                                                                 
+ * Unless required by applicable law or agreed to in writing, software                                                                                                             
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                                                                               
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or                                                                                                                 
+ * implied. See the License for the specific language governing                                                                                                                    
+ * permissions and limitations under the License. See accompanying                                                                                                                 
+ * LICENSE file.                                                                                                                                                                   
+ */
+
+package simpledb.versioned.benchmark.ycsb.measurements;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+/**
+ * An interned metric name made of the table, table type, operation, sub-operation and op count of a
+ * transaction. Keys are only created the first time a combination is seen; after that resolving a key
+ * is a few hash lookups on existing strings plus an array index, and recording against it is an array
+ * index into the calling thread's recorders.
+ *
+ * Op counts below DIRECT_OP_COUNTS get a key each. Larger ones share a key per power of two, reported
+ * as e.g. "OP COUNT: 1024-2047", and negative ones, which mean no count, share one key.
+ */
+public class MetricKey
+{
+	/**
+	 * Op counts below this get a key each, larger ones are bucketed by power of two.
+	 */
+	static final int DIRECT_OP_COUNTS=1024;
+
+	static final int FIRST_BUCKET_BITS=Integer.numberOfTrailingZeros(DIRECT_OP_COUNTS);
+
+	/**
+	 * Buckets of op counts from DIRECT_OP_COUNTS up to Integer.MAX_VALUE.
+	 */
+	static final int NUM_BUCKETS=31-FIRST_BUCKET_BITS;
+
+	final String _name;
+	final int _id;
+
+	MetricKey(String name, int id)
+	{
+		_name=name;
+		_id=id;
+	}
+
+	public String getName()
+	{
+		return _name;
+	}
+
+	@Override
+	public String toString()
+	{
+		return _name;
+	}
+
+	/**
+	 * Build the metric name reported for a transaction.
+	 */
+	public static String buildName(String tableName, String tableType, String operation, String subOperation, int opCount)
+	{
+		return "TABLE: " + tableName + "," + "TYPE: " + tableType + "," + "OPERATION: " + operation + ","
+				+ "SUB-OPERATION: " + subOperation + ", OP COUNT: " + opCountLabel(opCount);
+	}
+
+	/**
+	 * The op count as reported: the count itself, -1 for no count or the range of its bucket.
+	 */
+	static String opCountLabel(int opCount)
+	{
+		if (opCount<0)
+		{
+			return "-1";
+		}
+		if (opCount<DIRECT_OP_COUNTS)
+		{
+			return Integer.toString(opCount);
+		}
+		int low=Integer.highestOneBit(opCount);
+		return low + "-" + (low + (low - 1));
+	}
+
+	static int bucketOf(int opCount)
+	{
+		return 31-Integer.numberOfLeadingZeros(opCount)-FIRST_BUCKET_BITS;
+	}
+
+	/**
+	 * One level of the key tree, one per table, type, operation and sub-operation. The sub-operation
+	 * level holds the keys themselves, indexed by op count.
+	 */
+	static class Node
+	{
+		final ConcurrentHashMap<String,Node> children=new ConcurrentHashMap<String,Node>();
+		volatile MetricKey[] direct=new MetricKey[0];
+		final AtomicReferenceArray<MetricKey> buckets=new AtomicReferenceArray<MetricKey>(NUM_BUCKETS);
+		volatile MetricKey none;
+
+		Node child(String name)
+		{
+			Node child=children.get(name);
+			if (child==null)
+			{
+				child=children.computeIfAbsent(name, (n) -> new Node());
+			}
+			return child;
+		}
+	}
+
+	/**
+	 * Hands out interned keys and the dense ids used to index per-thread recorders.
+	 */
+	static class Registry
+	{
+		final Node root=new Node();
+		final ConcurrentHashMap<String,MetricKey> named=new ConcurrentHashMap<String,MetricKey>();
+		final AtomicInteger nextid=new AtomicInteger(0);
+
+		/**
+		 * The key of a metric that is not a transaction metric, by its full name.
+		 */
+		MetricKey get(String name)
+		{
+			MetricKey key=named.get(name);
+			if (key==null)
+			{
+				key=named.computeIfAbsent(name, (n) -> new MetricKey(n, nextid.getAndIncrement()));
+			}
+			return key;
+		}
+
+		MetricKey get(String tableName, String tableType, String operation, String subOperation, int opCount)
+		{
+			Node node=root.child(tableName).child(tableType).child(operation).child(subOperation);
+			if ( (opCount>=0) && (opCount<DIRECT_OP_COUNTS) )
+			{
+				MetricKey[] direct=node.direct;
+				if ( (opCount<direct.length) && (direct[opCount]!=null) )
+				{
+					return direct[opCount];
+				}
+				synchronized(node)
+				{
+					direct=node.direct;
+					if ( (opCount<direct.length) && (direct[opCount]!=null) )
+					{
+						return direct[opCount];
+					}
+					//copy on write so that readers never see a partially filled array
+					int length=Math.max(direct.length, Math.min(DIRECT_OP_COUNTS, Math.max(opCount+1, 2*direct.length)));
+					direct=Arrays.copyOf(direct, length);
+					direct[opCount]=newKey(tableName, tableType, operation, subOperation, opCount);
+					node.direct=direct;
+					return direct[opCount];
+				}
+			}
+			if (opCount<0)
+			{
+				MetricKey key=node.none;
+				if (key==null)
+				{
+					synchronized(node)
+					{
+						if (node.none==null)
+						{
+							node.none=newKey(tableName, tableType, operation, subOperation, -1);
+						}
+						key=node.none;
+					}
+				}
+				return key;
+			}
+			int bucket=bucketOf(opCount);
+			MetricKey key=node.buckets.get(bucket);
+			if (key==null)
+			{
+				synchronized(node)
+				{
+					key=node.buckets.get(bucket);
+					if (key==null)
+					{
+						key=newKey(tableName, tableType, operation, subOperation, opCount);
+						node.buckets.set(bucket, key);
+					}
+				}
+			}
+			return key;
+		}
+
+		MetricKey newKey(String tableName, String tableType, String operation, String subOperation, int opCount)
+		{
+			return new MetricKey(buildName(tableName, tableType, operation, subOperation, opCount), nextid.getAndIncrement());
+		}
+	}
+}
@@ -44,8 +44,33 @@ public abstract class OneMeasurement {
 
 	public abstract void measure(int latency);
 
+	/**
+	 * Record a latency given in nanoseconds. Measurements kept in milliseconds truncate it, finer
+	 * grained measurements should override this.
+	 */
+	public void measureNanos(long nanos)
+	{
+		measure((int)(nanos/1000000));
+	}
+
 	public abstract String getSummary();
 
+	/**
+	 * Number of values measured so far.
+	 */
+	public abstract long getOperations();
+
+	/**
+	 * Sum of all values measured so far.
+	 */
+	public abstract long getTotalLatency();
+
+	/**
+	 * Fold the values recorded by another measurement of the same type into this one. Used to combine
+	 * the per-thread recorders, so the other measurement must no longer be written to.
+	 */
+	public abstract void merge(OneMeasurement other);
+
   /**
    * Export the current measurements to a suitable format.
    * 
@@ -0,0 +1,202 @@
+/**                                                                                                                                                                                
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.                                                                                                                             
+ *                                                                                                                                                                                 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you                                                                                                             
+ * may not use this file except in compliance with the License. You                                                                                                                
+ * may obtain a copy of the License at                                                                                                                                             
+ *                                                                                                                                                                                 
+ * http://www.apache.org/licenses/LICENSE-2.0                                                                                                                                      
+ *                                                                                                                                                                                 
+ * Unless required by applicable law or agreed to in writing, software                                                                                                             
+ * distributed under the License is distributed on an "AS IS" BASIS,                                                                                                               
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or                                                                                                                 
+ * implied. See the License for the specific language governing                                                                                                                    
+ * permissions and limitations under the License. See accompanying                                                                                                                 
+ * LICENSE file.                                                                                                                                                                   
+ */
+
+package simpledb.versioned.benchmark.ycsb.measurements;
+
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.HashMap;
+import java.util.Map.Entry;
+import java.util.Properties;
+
+import simpledb.versioned.benchmark.ycsb.exporter.MeasurementsExporter;
+
+
+/**
+ * Take measurements in microseconds and keep them in a fixed size, log-linear bucketed histogram, in the
+ * style of HdrHistogram. Values below 2^precision us get a bucket each; above that every power of two
+ * range is split into 2^(precision-1) equal buckets, so any recorded value is off by at most
+ * 1/2^(precision-1) of itself and memory does not grow with the number or range of values.
+ */
+public class OneMeasurementHdrHistogram extends OneMeasurement
+{
+	/**
+	 * Number of bits of sub-bucket resolution. The relative error of a reported value is at most 2^-(precision-1).
+	 */
+	public static final String PRECISION="hdrhistogram.precision";
+	public static final String PRECISION_DEFAULT="8";
+
+	static final double[] PERCENTILES={50, 90, 99, 99.9, 99.99};
+
+	final LogLinearHistogram _histogram;
+
+	long operations;
+	long totallatency;
+	long min;
+	long max;
+	HashMap<Integer,int[]> returncodes;
+
+	public OneMeasurementHdrHistogram(String name, Properties props)
+	{
+		super(name);
+		_histogram=new LogLinearHistogram(Integer.parseInt(props.getProperty(PRECISION, PRECISION_DEFAULT)));
+		operations=0;
+		totallatency=0;
+		min=-1;
+		max=-1;
+		returncodes=new HashMap<Integer,int[]>();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.yahoo.ycsb.OneMeasurement#reportReturnCode(int)
+	 */
+	public void reportReturnCode(int code)
+	{
+		Integer Icode=code;
+		if (!returncodes.containsKey(Icode))
+		{
+			int[] val=new int[1];
+			val[0]=0;
+			returncodes.put(Icode,val);
+		}
+		returncodes.get(Icode)[0]++;
+	}
+
+	/**
+	 * Record a latency given in milliseconds.
+	 */
+	public void measure(int latency)
+	{
+		record(latency*1000L);
+	}
+
+	@Override
+	public void measureNanos(long nanos)
+	{
+		record(nanos/1000);
+	}
+
+	void record(long micros)
+	{
+		if (micros<0)
+		{
+			micros=0;
+		}
+		_histogram.record(micros);
+
+		operations++;
+		totallatency+=micros;
+
+		if ( (min<0) || (micros<min) )
+		{
+			min=micros;
+		}
+
+		if ( (max<0) || (micros>max) )
+		{
+			max=micros;
+		}
+	}
+
+	/**
+	 * Value at or below which the given percentage of the recorded values fall.
+	 */
+	long getValueAtPercentile(double percentile)
+	{
+		return Math.min(_histogram.getValueAtPercentile(percentile),max);
+	}
+
+	@Override
+	public long getOperations()
+	{
+		return operations;
+	}
+
+	@Override
+	public long getTotalLatency()
+	{
+		return totallatency;
+	}
+
+	@Override
+	public void merge(OneMeasurement other)
+	{
+		OneMeasurementHdrHistogram h=(OneMeasurementHdrHistogram)other;
+		_histogram.add(h._histogram);
+		for (Entry<Integer, int[]> e : h.returncodes.entrySet())
+		{
+			if (!returncodes.containsKey(e.getKey()))
+			{
+				returncodes.put(e.getKey(),new int[1]);
+			}
+			returncodes.get(e.getKey())[0]+=e.getValue()[0];
+		}
+
+		operations+=h.operations;
+		totallatency+=h.totallatency;
+
+		if ( (h.min>=0) && ((min<0) || (h.min<min)) )
+		{
+			min=h.min;
+		}
+
+		if ( (h.max>=0) && ((max<0) || (h.max>max)) )
+		{
+			max=h.max;
+		}
+	}
+
+  @Override
+  public void exportMeasurements(MeasurementsExporter exporter) throws IOException
+  {
+    exporter.write(getName(), "Operations", operations);
+    exporter.write(getName(), "AverageLatency(us)", (((double)totallatency)/((double)operations)));
+    exporter.write(getName(), "MinLatency(us)", min);
+    exporter.write(getName(), "MaxLatency(us)", max);
+
+    if (operations>0)
+    {
+      DecimalFormat d = new DecimalFormat("#.##");
+      for (double percentile : PERCENTILES)
+      {
+        exporter.write(getName(), d.format(percentile)+"thPercentileLatency(us)", getValueAtPercentile(percentile));
+      }
+    }
+
+    for (Integer I : returncodes.keySet())
+    {
+      int[] val=returncodes.get(I);
+      exporter.write(getName(), "Return="+I, val[0]);
+    }
+
+    for (int i=0; i<_histogram.getBucketCount(); i++)
+    {
+      if (_histogram.getCountAt(i)>0)
+      {
+        exporter.write(getName(), Long.toString(_histogram.highestEquivalentValue(i)), _histogram.getCountAt(i));
+      }
+    }
+  }
+
+	@Override
+	public String getSummary() {
+		DecimalFormat d = new DecimalFormat("#.##");
+		double report=((double)totallatency/((double)operations));
+		return "["+getName()+" AverageLatency(us)="+d.format(report)+"]";
+	}
+
+}
@@ -73,7 +73,7 @@ public class OneMeasurementHistogram extends OneMeasurement
 	/* (non-Javadoc)
 	 * @see com.yahoo.ycsb.OneMeasurement#reportReturnCode(int)
 	 */
-	public synchronized void reportReturnCode(int code)
+	public void reportReturnCode(int code)
 	{
 		Integer Icode=code;
 		if (!returncodes.containsKey(Icode))
@@ -89,7 +89,7 @@ public class OneMeasurementHistogram extends OneMeasurement
 	/* (non-Javadoc)
 	 * @see com.yahoo.ycsb.OneMeasurement#measure(int)
 	 */
-	public synchronized void measure(int latency)
+	public void measure(int latency)
 	{
 		//if (latency>=_buckets)
 		//{
@@ -123,6 +123,51 @@ public class OneMeasurementHistogram extends OneMeasurement
 	}
 
 
+	@Override
+	public long getOperations()
+	{
+		return operations;
+	}
+
+	@Override
+	public long getTotalLatency()
+	{
+		return totallatency;
+	}
+
+	@Override
+	public void merge(OneMeasurement other)
+	{
+		OneMeasurementHistogram h=(OneMeasurementHistogram)other;
+		for (Entry<Integer, Integer> e : h._values.entrySet())
+		{
+			Integer count=_values.get(e.getKey());
+			_values.put(e.getKey(), count==null ? e.getValue() : count+e.getValue());
+		}
+		for (Entry<Integer, int[]> e : h.returncodes.entrySet())
+		{
+			if (!returncodes.containsKey(e.getKey()))
+			{
+				returncodes.put(e.getKey(),new int[1]);
+			}
+			returncodes.get(e.getKey())[0]+=e.getValue()[0];
+		}
+
+		operations+=h.operations;
+		totallatency+=h.totallatency;
+
+		if ( (h.min>=0) && ((min<0) || (h.min<min)) )
+		{
+			min=h.min;
+		}
+
+		if ( (h.max>=0) && ((max<0) || (h.max>max)) )
+		{
+			max=h.max;
+		}
+	}
+
+
   @Override
   public void exportMeasurements(MeasurementsExporter exporter) throws IOException
   {
@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map.Entry;
 import java.util.Properties;
 
 import simpledb.versioned.benchmark.ycsb.exporter.MeasurementsExporter;
@@ -60,7 +61,7 @@ public class OneMeasurementList extends OneMeasurement
 	/* (non-Javadoc)
 	 * @see com.yahoo.ycsb.OneMeasurement#reportReturnCode(int)
 	 */
-	public synchronized void reportReturnCode(int code)
+	public void reportReturnCode(int code)
 	{
 		Integer Icode=code;
 		if (!returncodes.containsKey(Icode))
@@ -76,7 +77,7 @@ public class OneMeasurementList extends OneMeasurement
 	/* (non-Javadoc)
 	 * @see com.yahoo.ycsb.OneMeasurement#measure(int)
 	 */
-	public synchronized void measure(int latency)
+	public void measure(int latency)
 	{
 		_values.add(latency);
 
@@ -95,6 +96,47 @@ public class OneMeasurementList extends OneMeasurement
 	}
 
 
+	@Override
+	public long getOperations()
+	{
+		return operations;
+	}
+
+	@Override
+	public long getTotalLatency()
+	{
+		return totallatency;
+	}
+
+	@Override
+	public void merge(OneMeasurement other)
+	{
+		OneMeasurementList l=(OneMeasurementList)other;
+		_values.addAll(l._values);
+		for (Entry<Integer, int[]> e : l.returncodes.entrySet())
+		{
+			if (!returncodes.containsKey(e.getKey()))
+			{
+				returncodes.put(e.getKey(),new int[1]);
+			}
+			returncodes.get(e.getKey())[0]+=e.getValue()[0];
+		}
+
+		operations+=l.operations;
+		totallatency+=l.totallatency;
+
+		if ( (l.min>=0) && ((min<0) || (l.min<min)) )
+		{
+			min=l.min;
+		}
+
+		if ( (l.max>=0) && ((max<0) || (l.max>max)) )
+		{
+			max=l.max;
+		}
+	}
+
+
   @Override
   public void exportMeasurements(MeasurementsExporter exporter) throws IOException
   {
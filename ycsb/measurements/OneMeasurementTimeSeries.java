@@ -20,7 +20,9 @@ package simpledb.versioned.benchmark.ycsb.measurements;
 import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.HashMap;
+import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.TreeMap;
 import java.util.Vector;
 
 import simpledb.versioned.benchmark.ycsb.exporter.MeasurementsExporter;
@@ -31,12 +33,14 @@ class SeriesUnit
 	 * @param time
 	 * @param average
 	 */
-	public SeriesUnit(long time, double average) {
+	public SeriesUnit(long time, double average, int count) {
 		this.time = time;
 		this.average = average;
+		this.count = count;
 	}
 	public long time;
 	public double average; 
+	public int count;
 }
 
 /**
@@ -92,8 +96,11 @@ public class OneMeasurementTimeSeries extends OneMeasurement
 		
 		if ( (unit>currentunit) || (forceend) )
 		{
-			double avg=((double)sum)/((double)count);
-			_measurements.add(new SeriesUnit(currentunit,avg));
+			if (count>0)
+			{
+				double avg=((double)sum)/((double)count);
+				_measurements.add(new SeriesUnit(currentunit,avg,count));
+			}
 			
 			currentunit=unit;
 			
@@ -126,6 +133,84 @@ public class OneMeasurementTimeSeries extends OneMeasurement
 	}
 
 
+	@Override
+	public long getOperations()
+	{
+		return operations;
+	}
+
+	@Override
+	public long getTotalLatency()
+	{
+		return totallatency;
+	}
+
+	@Override
+	public void merge(OneMeasurement other)
+	{
+		OneMeasurementTimeSeries t=(OneMeasurementTimeSeries)other;
+
+		for (Entry<Integer, int[]> e : t.returncodes.entrySet())
+		{
+			if (!returncodes.containsKey(e.getKey()))
+			{
+				returncodes.put(e.getKey(),new int[1]);
+			}
+			returncodes.get(e.getKey())[0]+=e.getValue()[0];
+		}
+
+		if (t.start<0)
+		{
+			return;
+		}
+		t.checkEndOfUnit(true);
+
+		//units are relative to the first measurement of each thread, so re-align both series on the earliest start
+		long origin=(start<0) ? t.start : Math.min(start,t.start);
+		TreeMap<Long,SeriesUnit> units=new TreeMap<Long,SeriesUnit>();
+		if (start>=0)
+		{
+			checkEndOfUnit(true);
+			addUnits(units,this,origin);
+		}
+		addUnits(units,t,origin);
+		_measurements=new Vector<SeriesUnit>(units.values());
+		start=origin;
+
+		operations+=t.operations;
+		totallatency+=t.totallatency;
+
+		if ( (t.min>=0) && ((min<0) || (t.min<min)) )
+		{
+			min=t.min;
+		}
+
+		if (t.max>max)
+		{
+			max=t.max;
+		}
+	}
+
+	private void addUnits(TreeMap<Long,SeriesUnit> units, OneMeasurementTimeSeries series, long origin)
+	{
+		for (SeriesUnit unit : series._measurements)
+		{
+			long time=((series.start+unit.time-origin)/_granularity)*_granularity;
+			SeriesUnit existing=units.get(time);
+			if (existing==null)
+			{
+				units.put(time,new SeriesUnit(time,unit.average,unit.count));
+			}
+			else
+			{
+				int count=existing.count+unit.count;
+				existing.average=(existing.average*existing.count+unit.average*unit.count)/count;
+				existing.count=count;
+			}
+		}
+	}
+
+
   @Override
   public void exportMeasurements(MeasurementsExporter exporter) throws IOException
   {